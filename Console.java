@@ -0,0 +1,241 @@
+package se2aa4.morris;
+
+import se2aa4.morris.enums.Detail;
+import se2aa4.morris.enums.Location;
+import se2aa4.morris.enums.Player;
+import se2aa4.morris.enums.State;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.file.Paths;
+
+/**
+ * Headless text front end, plays through Game without javafx
+ */
+public class Console {
+
+    // constants
+    private static final int ENGINE_TIME_MS = 500;
+    private static final int ENGINE_TABLE_MB = 16;
+    private static final String HELP =
+            "new                     start a new game\n"
+            + "click <location>        click a node or inventory slot, e.g. click nON\n"
+            + "end                     end the turn\n"
+            + "play <move>             play a whole turn, e.g. play nON-nIN x nOE\n"
+            + "moves                   list legal moves\n"
+            + "computer [ms]           let the computer play the turn\n"
+            + "restore, undo, redo     take back moves\n"
+            + "save [file], load [file]\n"
+            + "board, help, quit";
+
+    // board drawing, letters are replaced by the node they name
+    private static final String[] BOARD = {
+            "a-----b-----c",
+            "|     |     |",
+            "| i---j---k |",
+            "| |       | |",
+            "h-p       l-d",
+            "| |       | |",
+            "| o---n---m |",
+            "|     |     |",
+            "g-----f-----e"
+    };
+
+    private final BufferedReader in;
+    private final PrintStream out;
+    private Game game = new Game();
+    private final Engine engine = new Engine(new TranspositionTable(ENGINE_TABLE_MB));
+    private final OpeningBook book = new OpeningBook(Paths.get(OpeningBook.DEFAULT_FILENAME));
+
+    /**
+     * Console constructor
+     * @param in command input
+     * @param out text output
+     */
+    public Console(BufferedReader in, PrintStream out) {
+        this.in = in;
+        this.out = out;
+        engine.setTimeLimit(ENGINE_TIME_MS);
+    }
+
+    /**
+     * read and run commands until quit or end of input
+     */
+    public void run() throws IOException {
+        out.println(HELP);
+        String line;
+        while ((line = in.readLine()) != null) {
+            String[] words = line.trim().split("\\s+", 2);
+            String arg = words.length > 1 ? words[1] : "";
+            if (words[0].equals("quit")) break;
+            if (words[0].isEmpty()) continue;
+            try {
+                command(words[0], arg);
+            } catch (IOException e) {
+                out.println("error: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * run one command
+     * @param name command name
+     * @param arg rest of the line
+     */
+    private void command(String name, String arg) throws IOException {
+        if (name.equals("new")) {
+            game.newGame();
+            draw();
+            return;
+        } else if (name.equals("help")) {
+            out.println(HELP);
+            return;
+        } else if (name.equals("load")) {
+            game = SaveFormat.load(Paths.get(arg.isEmpty() ? SaveFormat.DEFAULT_FILENAME : arg));
+            draw();
+            return;
+        } else if (game.getState() == State.UNSTARTED) {
+            out.println("no game, type new");
+            return;
+        }
+
+        switch (name) {
+            case "click":
+                Location l = Location.getByString(arg);
+                if (l == null || l == Location.NONE) {
+                    out.println("unknown location " + arg);
+                    return;
+                }
+                game.handleMove(l);
+                if (game.whoseMill() == game.getTurn()) out.println("choose piece to remove");
+                break;
+            case "end":
+                report(game.endTurn());
+                break;
+            case "play":
+                int m = Move.parse(arg);
+                report(m < 0 ? Detail.NO_MOVE : game.playMove(m));
+                break;
+            case "moves":
+                int[] moves = new int[MoveGenerator.MAX_MOVES];
+                int n = game.getLegalMoves(moves);
+                for (int i = 0; i < n; i++) out.println(Move.toString(moves[i], game.getTurn()));
+                return;
+            case "computer":
+                if (game.getState() != State.IN_PROGRESS) {
+                    out.println("game over");
+                    return;
+                }
+                if (!arg.isEmpty()) {
+                    long ms;
+                    try {
+                        ms = Long.parseLong(arg);
+                    } catch (NumberFormatException e) {
+                        ms = -1;
+                    }
+                    if (ms <= 0) {
+                        out.println("usage: computer [ms], ms a positive number");
+                        return;
+                    }
+                    engine.setTimeLimit(ms);
+                }
+                game.restore();
+                int best = game.getBookMove(book);
+                String info = "book";
+                if (best == 0) {
+                    best = game.findMove(engine);
+                    info = engine.getInfo();
+                }
+                if (best == 0) {
+                    out.println("no move");
+                    return;
+                }
+                Player side = game.getTurn();
+                report(game.playMove(best));
+                out.println(side + " played " + Move.toString(best, side) + ", " + info);
+                break;
+            case "restore":
+                game.restore();
+                break;
+            case "undo":
+                if (!game.undo()) out.println("nothing to undo");
+                break;
+            case "redo":
+                if (!game.redo()) out.println("nothing to redo");
+                break;
+            case "save":
+                SaveFormat.save(Paths.get(arg.isEmpty() ? SaveFormat.DEFAULT_FILENAME : arg), game);
+                out.println("saved");
+                return;
+            case "board":
+                break;
+            default:
+                out.println("unknown command " + name + ", type help");
+                return;
+        }
+        draw();
+    }
+
+    /**
+     * print the result of ending a turn
+     * @param detail detail of ending the turn
+     */
+    private void report(Detail detail) {
+        switch (detail) {
+            case END_TURN:
+                break;
+            case MILL:
+                out.println("choose piece to remove");
+                break;
+            case MULTIPLE_MOVES:
+                out.println("multiple moves made, restore the turn");
+                break;
+            case NO_MOVE:
+                out.println("no move made");
+                break;
+            default:
+                out.println(detail);
+        }
+    }
+
+    /**
+     * print the board, inventories and whose turn it is
+     */
+    private void draw() {
+        for (String row: BOARD) {
+            StringBuilder s = new StringBuilder(row);
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                if (c >= 'a' && c <= 'p') s.setCharAt(i, symbol(Location.byNode(c - 'a')));
+            }
+            out.println(s);
+        }
+        out.println("inventory R " + game.getInventory(Player.RED) + " B " + game.getInventory(Player.BLUE));
+        out.println(game.getState() == State.IN_PROGRESS ? game.getTurn() + "'s turn" : game.getState().toString());
+    }
+
+    /**
+     * get board symbol of a node
+     */
+    private char symbol(Location l) {
+        if (l == game.getSel()) return '*';
+        switch (game.getPiece(l).owner()) {
+            case RED:
+                return 'R';
+            case BLUE:
+                return 'B';
+            default:
+                return '.';
+        }
+    }
+
+    /**
+     * Start point of the headless front end
+     * @param args unused
+     */
+    public static void main(String[] args) throws IOException {
+        new Console(new BufferedReader(new InputStreamReader(System.in)), System.out).run();
+    }
+}
@@ -1,13 +1,18 @@
 package se2aa4.morris;
 
-import java.io.*;
+import java.io.IOException;
 import java.net.URL;
-import java.util.AbstractMap;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
 import java.util.ResourceBundle;
 
+import javafx.concurrent.Task;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
+import javafx.scene.control.Button;
 import javafx.scene.input.MouseEvent;
 import javafx.scene.paint.Paint;
 import javafx.scene.shape.Circle;
@@ -18,10 +23,11 @@ import se2aa4.morris.enums.*;
 /**
  * Handles UI events and communicates with Game
  */
-public class Controller implements Initializable {
+public class Controller implements Initializable, GameListener {
 
 	// constants
-    private static final String SAVE_FILENAME = "save/save.ser";
+    private static final String SAVE_FILENAME = SaveFormat.DEFAULT_FILENAME;
+    private static final String LEGACY_SAVE_FILENAME = "save/save.ser";
 	private static final Paint
         COL_RED = Paint.valueOf("#ff0000"),
         COL_BLUE = Paint.valueOf("#0000ff"),
@@ -38,17 +44,33 @@ public class Controller implements Initializable {
         MSG_LOAD_FAIL = "Failed to load",
         MSG_SAVE_FAIL = "Failed to save",
         MSG_DRAW = "Draw",
+        MSG_REPETITION = "Position repeated three times",
+        MSG_NO_CAPTURES_PREFIX = "No capture in ",
+        MSG_NO_CAPTURES_POSTFIX = " turns",
         MSG_WIN_POSTFIX = " wins",
         MSG_TURN_POSTFIX = "'s turn",
         MSG_RESTORED = "Game state restored",
-        MSG_MILL = "Chose piece to remove";
+        MSG_UNDONE = "Turn taken back",
+        MSG_REDONE = "Turn replayed",
+        MSG_NO_UNDO = "Nothing to undo",
+        MSG_NO_REDO = "Nothing to redo",
+        MSG_MILL = "Chose piece to remove",
+        MSG_COMPUTER = "Computer",
+        MSG_COMPUTER_PREFIX = "Computer: ",
+        MSG_NPS_POSTFIX = " nodes/s";
     private static final int RADIUS_EMPTY = 8;
     private static final int RADIUS_PIECE = 10;
+    private static final int ENGINE_TIME_MS = 500;
+    private static final int ENGINE_TABLE_MB = 16;
+    private static final Location[] LOCATIONS = Location.values();
 
     // UI elements
     @FXML
     private Text msgLabelL, msgLabelR;
 
+    @FXML
+    private Button computerBut;
+
     @FXML
 	private Shape
         iR0, iR1, iR2, iR3, iR4, iR5,
@@ -56,15 +78,30 @@ public class Controller implements Initializable {
         nONW, nON, nONE, nOE, nOSE, nOS, nOSW, nOW,
         nINW, nIN, nINE, nIE, nISE, nIS, nISW, nIW;
 
+    // shapes indexed by location ordinal
+    private Shape[] shapes;
+
     // game object
     private Game game;
 
+    // computer opponent
+    private Engine engine;
+    // mapped by the first computer move, off the UI thread
+    private final OpeningBook book = new OpeningBook(Paths.get(OpeningBook.DEFAULT_FILENAME));
+    private Player computer = Player.NONE;
+    private boolean thinking;
+
 	/**
 	 * initialize UI
 	 */
 	@Override
 	public void initialize(URL arg0, ResourceBundle arg1) {
         game =  new Game();
+        game.addListener(this, true);
+        shapes = new Shape[LOCATIONS.length];
+        for (Location l: LOCATIONS) shapes[l.ordinal()] = getShape(l);
+        engine = new Engine(new TranspositionTable(ENGINE_TABLE_MB));
+        engine.setTimeLimit(ENGINE_TIME_MS);
         updateMsg(game.getState());
 	}
 
@@ -74,26 +111,48 @@ public class Controller implements Initializable {
      */
 	@FXML
 	private void processNewGame(ActionEvent event) {
+        if (thinking) return;
         game.newGame();
         updateMsg(State.IN_PROGRESS);
-        draw();
+        playComputer();
 	}
 
+    /**
+     * Click computer button, toggles computer playing the current side
+     * @param event action event
+     */
+    @FXML
+    private void processComputer(ActionEvent event) {
+        if (thinking || game.getState() != State.IN_PROGRESS) return;
+        if (computer == Player.NONE) {
+            computer = game.getTurn();
+            computerBut.setText(MSG_COMPUTER_PREFIX + computer);
+            game.restore();
+            playComputer();
+        } else {
+            computer = Player.NONE;
+            computerBut.setText(MSG_COMPUTER);
+        }
+    }
+
     /**
      * Click load button
      * @param event action event
      */
     @FXML
     private void processLoad(ActionEvent event) {
+        if (thinking) return;
         Game gameBak = game;
         game = load();
         if (game == null) {
             game = gameBak;
             updateMsg(game.getState(), Detail.LOAD_FAIL);
         } else {
+            game.addListener(this, true);
             updateMsg(game.getState(), Detail.LOADED);
         }
         draw();
+        playComputer();
     }
 
     /**
@@ -113,9 +172,40 @@ public class Controller implements Initializable {
      */
     @FXML
     private void processRestore(ActionEvent event) {
+        if (thinking) return;
         game.restore();
         updateMsg(game.getState(), Detail.RESTORED);
-        draw();
+    }
+
+    /**
+     * Click undo button
+     * @param event action event
+     */
+    @FXML
+    private void processUndo(ActionEvent event) {
+        if (thinking || game.getState() == State.UNSTARTED) return;
+        // take back the computer's reply as well
+        boolean undone = game.undo();
+        if (undone && computer == game.getTurn()) game.undo();
+        if (computer == game.getTurn()) {
+            // nothing left to take back, hand the side to the player
+            computer = Player.NONE;
+            computerBut.setText(MSG_COMPUTER);
+        }
+        updateMsg(game.getState(), undone ? Detail.UNDONE : Detail.NO_UNDO);
+    }
+
+    /**
+     * Click redo button
+     * @param event action event
+     */
+    @FXML
+    private void processRedo(ActionEvent event) {
+        if (thinking || game.getState() == State.UNSTARTED) return;
+        boolean redone = game.redo();
+        if (redone && computer == game.getTurn()) game.redo();
+        updateMsg(game.getState(), redone ? Detail.REDONE : Detail.NO_REDO);
+        playComputer();
     }
 
     /**
@@ -124,7 +214,7 @@ public class Controller implements Initializable {
      */
 	@FXML
 	private void processEndTurn(ActionEvent event) {
-        if (game.getState() == State.UNSTARTED) return;
+        if (game.getState() == State.UNSTARTED || thinking) return;
         switch (game.endTurn()) {
             case MULTIPLE_MOVES:
                 updateMsg(game.getState(), Detail.MULTIPLE_MOVES);
@@ -136,13 +226,41 @@ public class Controller implements Initializable {
                 updateMsg(game.getState(), Detail.OVERLAPPING);
                 break;
             case END_TURN:
-                updateMsg(game.getState(), Detail.CLEAR);
+                updateMsg(game.getState(), game.getState() == State.DRAW ? game.getDrawReason() : Detail.CLEAR);
+                playComputer();
                 break;
             default:
                 //
         }
 	}
 
+    /**
+     * Let the computer play its turn on a background thread
+     */
+    private void playComputer() {
+        if (thinking || computer != game.getTurn() || game.getState() != State.IN_PROGRESS) return;
+        thinking = true;
+        final Game current = game;
+        final Task<Integer> task = new Task<Integer>() {
+            @Override
+            protected Integer call() {
+                return current.findMove(book, engine);
+            }
+        };
+        task.setOnSucceeded(e -> {
+            thinking = false;
+            if (current != game || task.getValue() == 0) return;
+            if (game.playMove(task.getValue()) == Detail.END_TURN) {
+                updateMsg(game.getState(),
+                        game.getState() == State.DRAW ? game.getDrawReason() : Detail.COMPUTER_MOVED);
+            }
+        });
+        task.setOnFailed(e -> thinking = false);
+        Thread thread = new Thread(task);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
     /**
      * Click on a node
      * @param event action event
@@ -154,13 +272,10 @@ public class Controller implements Initializable {
                 // game isn't started
                 break;
             case IN_PROGRESS:
+                if (thinking || computer == game.getTurn()) break;
                 Location loc = Location.getByString(((Shape)event.getSource()).getId());
                 game.handleMove(loc);
-                if (game.whoseMill() == game.getTurn()) {
-                    updateMsg(game.getState(), Detail.MILL);
-                } else {
-                    updateMsg(game.getState(), Detail.CLEAR);
-                }
+                // selection changes have no event
                 draw();
                 break;
             case DRAW:
@@ -171,6 +286,36 @@ public class Controller implements Initializable {
 
 	}
 
+    /**
+     * Show the result of a game event
+     * @param event game event
+     */
+    @Override
+    public void onEvent(GameEvent event) {
+        switch (event.getType()) {
+            case PLACED:
+            case MOVED:
+            case REMOVED:
+                updateMsg(game.getState(), Detail.CLEAR);
+                break;
+            case MILL:
+                if (event.getPlayer() == game.getTurn()) updateMsg(game.getState(), Detail.MILL);
+                break;
+            default:
+                //
+        }
+    }
+
+    /**
+     * Show the results of a game call and redraw what it changed
+     * @param events game events
+     */
+    @Override
+    public void onEvents(List<GameEvent> events) {
+        for (GameEvent e: events) onEvent(e);
+        draw();
+    }
+
     /**
      * Display message about game state and additional details
      * @param state action event
@@ -187,8 +332,7 @@ public class Controller implements Initializable {
                 msgLabelL.setText(MSG_DRAW);
                 break;
             case WON:
-                // FIXME
-                msgLabelL.setText(game.getTurn() + MSG_WIN_POSTFIX);
+                msgLabelL.setText(game.getWinner() + MSG_WIN_POSTFIX);
                 break;
             default:
                 //
@@ -235,6 +379,27 @@ public class Controller implements Initializable {
             case RESTORED:
                 msgLabelR.setText(MSG_RESTORED);
                 break;
+            case UNDONE:
+                msgLabelR.setText(MSG_UNDONE);
+                break;
+            case REDONE:
+                msgLabelR.setText(MSG_REDONE);
+                break;
+            case NO_UNDO:
+                msgLabelR.setText(MSG_NO_UNDO);
+                break;
+            case NO_REDO:
+                msgLabelR.setText(MSG_NO_REDO);
+                break;
+            case REPETITION:
+                msgLabelR.setText(MSG_REPETITION);
+                break;
+            case NO_CAPTURES:
+                msgLabelR.setText(MSG_NO_CAPTURES_PREFIX + game.getNoCaptureLimit() + MSG_NO_CAPTURES_POSTFIX);
+                break;
+            case COMPUTER_MOVED:
+                msgLabelR.setText(engine.getNodesPerSecond() + MSG_NPS_POSTFIX);
+                break;
             default:
                 //
         }
@@ -245,21 +410,14 @@ public class Controller implements Initializable {
      * @return game object
      */
     private static Game load() {
-        Game game;
+        Path path = Paths.get(SAVE_FILENAME);
+        if (!Files.exists(path)) path = Paths.get(LEGACY_SAVE_FILENAME);
         try {
-            FileInputStream filein = new FileInputStream(SAVE_FILENAME);
-            ObjectInputStream in = new ObjectInputStream(filein);
-            game = (Game) in.readObject();
-            in.close();
-            filein.close();
+            return SaveFormat.load(path);
         } catch (IOException e) {
             e.printStackTrace();
             return null;
-        } catch (ClassNotFoundException e) {
-            e.printStackTrace();
-            return null;
         }
-        return game;
     }
 
     /**
@@ -269,11 +427,7 @@ public class Controller implements Initializable {
      */
     private static boolean save(Game game) {
         try {
-            FileOutputStream fileout = new FileOutputStream(SAVE_FILENAME);
-            ObjectOutputStream out = new ObjectOutputStream(fileout);
-            out.writeObject(game);
-            out.close();
-            fileout.close();
+            SaveFormat.save(Paths.get(SAVE_FILENAME), game);
         } catch (IOException e) {
             e.printStackTrace();
             return false;
@@ -282,37 +436,39 @@ public class Controller implements Initializable {
     }
 
     /**
-     * Draw pieces
+     * Draw pieces at locations changed since the last draw
      */
     private void draw() {
-        AbstractMap.SimpleEntry<Location, Piece>[] list = game.getBoard();
-
-        for (AbstractMap.SimpleEntry<Location, Piece> pair: list) {
-
-            Circle node = (Circle)getShape(pair.getKey());
+        for (long dirty = game.takeChanged(); dirty != 0; dirty &= dirty - 1) {
+            Location l = LOCATIONS[Long.numberOfTrailingZeros(dirty)];
+            if (l != Location.NONE) draw(l);
+        }
+    }
 
-            if (pair.getValue() == Piece.NONE) {
-                if (pair.getKey().toString().contains("B") ||
-                        pair.getKey().toString().contains("R")) {
-                    node.setVisible(false);
-                } else {
-                    node.setRadius(RADIUS_EMPTY);
-                    node.setFill(COL_BLACK);
-                }
+    /**
+     * Draw the piece at one location
+     * @param l location on the board
+     */
+    private void draw(Location l) {
+        Circle node = (Circle) shapes[l.ordinal()];
+        Piece piece = game.getPiece(l);
+        if (piece == Piece.NONE) {
+            if (l.isInventory()) {
+                node.setVisible(false);
             } else {
-                node.setRadius(RADIUS_PIECE);
-                node.setVisible(true);
-                if (pair.getValue().toString().contains("R")) {
-                    node.setFill(COL_RED);
-                } else {
-                    node.setFill(COL_BLUE);
-                }
+                node.setRadius(RADIUS_EMPTY);
+                node.setFill(COL_BLACK);
+            }
+        } else {
+            node.setRadius(RADIUS_PIECE);
+            node.setVisible(true);
+            if (piece.owner() == Player.RED) {
+                node.setFill(COL_RED);
+            } else {
+                node.setFill(COL_BLUE);
             }
         }
-        if (game.getSel() != Location.NONE) {
-            Circle node = (Circle) getShape(game.getSel());
-            node.setFill(COL_GREEN);
-        }
+        if (l == game.getSel()) node.setFill(COL_GREEN);
     }
 
     /**
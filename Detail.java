@@ -4,5 +4,5 @@ package se2aa4.morris.enums;
  * Game detail enum
  */
 public enum Detail {
-    CLEAR, RESTORED, END_TURN, MILL, OVERLAPPING, MULTIPLE_MOVES, NO_MOVE, LOADED, LOAD_FAIL, SAVED, SAVE_FAIL;
+    CLEAR, RESTORED, END_TURN, MILL, OVERLAPPING, MULTIPLE_MOVES, NO_MOVE, LOADED, LOAD_FAIL, SAVED, SAVE_FAIL, COMPUTER_MOVED, UNDONE, REDONE, NO_UNDO, NO_REDO, REPETITION, NO_CAPTURES;
 }
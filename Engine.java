@@ -0,0 +1,352 @@
+package se2aa4.morris;
+
+import se2aa4.morris.enums.Player;
+
+/**
+ * Alpha-beta computer opponent with iterative deepening
+ */
+public final class Engine implements Searcher {
+
+    // score bounds
+    public static final int WIN = 30000;
+    private static final int INFINITY = 32000;
+
+    // search limits
+    static final int MAX_PLY = 128;
+
+    // evaluation weights
+    private static final int PIECE_VALUE = 100, MOBILITY_VALUE = 5;
+
+    // move ordering priorities
+    private static final int ORDER_TABLE = 1 << 30, ORDER_CAPTURE = 1 << 24, ORDER_KILLER = 1 << 22;
+
+    // shared position cache
+    private final TranspositionTable table;
+
+    // limits
+    private long timeLimit = 1000;
+    private long nodeLimit = Long.MAX_VALUE;
+    private int maxDepth = 64;
+
+    // position being searched, moves are made and unmade in place
+    private final Frame frame = new Frame();
+
+    // per ply search data
+    private final int[][] moves = new int[MAX_PLY][MoveGenerator.MAX_MOVES];
+    private final int[][] order = new int[MAX_PLY][MoveGenerator.MAX_MOVES];
+    private final int[][] killers = new int[MAX_PLY][2];
+    private final int[] history = new int[1 << 15];
+
+    // search state and statistics
+    private volatile boolean abort;
+    private boolean stopped;
+    private long nodes, deadline, elapsed;
+    private int bestMove, bestScore, depth, rootBest;
+
+    /**
+     * Engine constructor
+     * @param table transposition table to use
+     */
+    public Engine(TranspositionTable table) {
+        this.table = table;
+    }
+
+    /**
+     * set time budget per move
+     * @param ms milliseconds
+     */
+    public void setTimeLimit(long ms) {
+        timeLimit = ms;
+    }
+
+    /**
+     * set node budget per move
+     * @param nodes maximum nodes searched
+     */
+    public void setNodeLimit(long nodes) {
+        nodeLimit = nodes;
+    }
+
+    /**
+     * set maximum iteration depth
+     * @param depth maximum depth in plies
+     */
+    public void setMaxDepth(int depth) {
+        maxDepth = Math.min(depth, MAX_PLY - 1);
+    }
+
+    /**
+     * stop a running search from another thread
+     */
+    @Override
+    public void stop() {
+        abort = true;
+    }
+
+    /**
+     * find the best move for a player
+     * @param frame position to search, left unchanged
+     * @param side player to move
+     * @return best move, 0 if the player has no move
+     */
+    @Override
+    public int search(Frame frame, Player side) {
+        abort = false;
+        table.newSearch();
+        return iterate(frame, side, 1);
+    }
+
+    /**
+     * clear a previous stop request before a shared search
+     */
+    void resume() {
+        abort = false;
+    }
+
+    /**
+     * iterative deepening loop
+     * @param frame position to search, left unchanged
+     * @param side player to move
+     * @param firstDepth depth of the first iteration
+     * @return best move, 0 if the player has no move
+     */
+    int iterate(Frame frame, Player side, int firstDepth) {
+        long start = System.nanoTime();
+        deadline = start + timeLimit * 1000000L;
+        nodes = 0;
+        stopped = false;
+        bestMove = 0;
+        bestScore = 0;
+        depth = 0;
+        this.frame.set(frame);
+        // age history scores, so earlier searches guide ordering without swamping this one
+        for (int i = 0; i < history.length; i++) history[i] >>= 1;
+
+        int n = MoveGenerator.generate(frame, side, moves[0]);
+        if (n > 0) bestMove = moves[0][0];
+
+        // deepen until out of budget or the result is forced
+        for (int d = Math.min(firstDepth, maxDepth); d <= maxDepth && n > 1; d++) {
+            int score = negamax(0, d, -INFINITY, INFINITY, side);
+            if (stopped) break;
+            bestMove = rootBest;
+            bestScore = score;
+            depth = d;
+            if (Math.abs(score) >= WIN - MAX_PLY) break;
+            if (System.nanoTime() - start > timeLimit * 500000L) break;
+        }
+
+        elapsed = System.nanoTime() - start;
+        return bestMove;
+    }
+
+    /**
+     * negamax alpha-beta search
+     * @param ply distance from root
+     * @param depth remaining depth
+     * @param alpha lower bound
+     * @param beta upper bound
+     * @param side player to move
+     * @return score for the player to move
+     */
+    private int negamax(int ply, int depth, int alpha, int beta, Player side) {
+        if ((++nodes & 1023) == 0) checkLimits();
+        if (stopped) return 0;
+        if (isLost(frame, side)) return -WIN + ply;
+        if (depth <= 0 || ply >= MAX_PLY - 1) return evaluate(frame, side);
+
+        // consult table
+        long key = frame.getHash() ^ Zobrist.side(side);
+        long entry = table.probe(key);
+        int tableMove = 0;
+        if (entry != TranspositionTable.MISS) {
+            tableMove = TranspositionTable.move(entry);
+            if (ply > 0 && TranspositionTable.depth(entry) >= depth) {
+                int score = fromTable(TranspositionTable.score(entry), ply);
+                int flag = TranspositionTable.flag(entry);
+                if (flag == TranspositionTable.EXACT) return score;
+                if (flag == TranspositionTable.LOWER && score >= beta) return score;
+                if (flag == TranspositionTable.UPPER && score <= alpha) return score;
+            }
+        }
+
+        int[] list = moves[ply];
+        int n = MoveGenerator.generate(frame, side, list);
+        if (n == 0) return -WIN + ply;
+        score(list, order[ply], n, tableMove, ply);
+
+        int best = -INFINITY, bestMove = 0, alphaStart = alpha;
+        for (int i = 0; i < n; i++) {
+            int m = pick(list, order[ply], i, n);
+            frame.make(side, m);
+            int score = -negamax(ply + 1, depth - 1, -beta, -alpha, side.opponent());
+            frame.unmake(side, m);
+            if (stopped) return 0;
+
+            if (score > best) {
+                best = score;
+                bestMove = m;
+                if (ply == 0) rootBest = m;
+            }
+            if (score > alpha) alpha = score;
+            if (alpha >= beta) {
+                if (Move.capture(m) == Move.NONE) {
+                    if (killers[ply][0] != m) {
+                        killers[ply][1] = killers[ply][0];
+                        killers[ply][0] = m;
+                    }
+                    history[m] += depth * depth;
+                }
+                break;
+            }
+        }
+
+        int flag = best <= alphaStart ? TranspositionTable.UPPER
+                : best >= beta ? TranspositionTable.LOWER : TranspositionTable.EXACT;
+        table.store(key, bestMove, toTable(best, ply), depth, flag);
+        return best;
+    }
+
+    /**
+     * stop search when out of budget
+     */
+    private void checkLimits() {
+        if (abort || nodes >= nodeLimit || System.nanoTime() >= deadline) stopped = true;
+    }
+
+    /**
+     * assign ordering scores to moves
+     */
+    private void score(int[] list, int[] scores, int n, int tableMove, int ply) {
+        for (int i = 0; i < n; i++) {
+            int m = list[i];
+            if (m == tableMove) scores[i] = ORDER_TABLE;
+            else if (Move.capture(m) != Move.NONE) scores[i] = ORDER_CAPTURE;
+            else if (m == killers[ply][0]) scores[i] = ORDER_KILLER + 1;
+            else if (m == killers[ply][1]) scores[i] = ORDER_KILLER;
+            else scores[i] = Math.min(history[m], ORDER_KILLER - 1);
+        }
+    }
+
+    /**
+     * move the highest scored remaining move to position i
+     * @return move at position i
+     */
+    private static int pick(int[] list, int[] scores, int i, int n) {
+        int best = i;
+        for (int j = i + 1; j < n; j++) {
+            if (scores[j] > scores[best]) best = j;
+        }
+        int m = list[best], s = scores[best];
+        list[best] = list[i];
+        scores[best] = scores[i];
+        list[i] = m;
+        scores[i] = s;
+        return m;
+    }
+
+    /**
+     * static evaluation
+     * @param frame position
+     * @param side player to move
+     * @return score for the player to move
+     */
+    static int evaluate(Frame frame, Player side) {
+        Player other = side.opponent();
+        int own = frame.getPieces(side), opp = frame.getPieces(other);
+        int empty = ~(own | opp);
+        int material = Integer.bitCount(own) + frame.getInventory(side)
+                - Integer.bitCount(opp) - frame.getInventory(other);
+        Topology topology = frame.getTopology();
+        return PIECE_VALUE * material
+                + MOBILITY_VALUE * (mobility(topology, own, empty) - mobility(topology, opp, empty));
+    }
+
+    /**
+     * count moves available to a set of pieces
+     */
+    private static int mobility(Topology topology, int pieces, int empty) {
+        int count = 0;
+        for (int p = pieces; p != 0; p &= p - 1) {
+            count += Integer.bitCount(topology.adjacent(Integer.numberOfTrailingZeros(p)) & empty);
+        }
+        return count;
+    }
+
+    /**
+     * has a player lost on material
+     * @param frame position
+     * @param side which player
+     */
+    static boolean isLost(Frame frame, Player side) {
+        return frame.getCount(side) + frame.getInventory(side) < 3;
+    }
+
+    /**
+     * adjust win scores to be relative to the stored position
+     */
+    private static int toTable(int score, int ply) {
+        if (score >= WIN - MAX_PLY) return score + ply;
+        if (score <= -WIN + MAX_PLY) return score - ply;
+        return score;
+    }
+
+    private static int fromTable(int score, int ply) {
+        if (score >= WIN - MAX_PLY) return score - ply;
+        if (score <= -WIN + MAX_PLY) return score + ply;
+        return score;
+    }
+
+    /**
+     * get best move of the last search
+     */
+    public int getBestMove() {
+        return bestMove;
+    }
+
+    /**
+     * get score of the last search
+     */
+    public int getScore() {
+        return bestScore;
+    }
+
+    /**
+     * get depth completed by the last search
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * get nodes visited by the last search
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * get search speed of the last search
+     * @return nodes per second
+     */
+    public long getNodesPerSecond() {
+        return elapsed > 0 ? nodes * 1000000000L / elapsed : 0;
+    }
+
+    /**
+     * get time taken by the last search
+     * @return nanoseconds
+     */
+    public long getElapsed() {
+        return elapsed;
+    }
+
+    /**
+     * get summary of the last search
+     */
+    @Override
+    public String getInfo() {
+        return "depth " + depth + " score " + bestScore + " nodes " + nodes
+                + " nps " + getNodesPerSecond();
+    }
+}
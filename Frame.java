@@ -5,48 +5,130 @@ import se2aa4.morris.enums.Piece;
 import se2aa4.morris.enums.Player;
 
 import java.io.Serializable;
-import java.util.*;
+import java.util.AbstractMap;
 
 /**
  * Frame data and methods
+ *
+ * Positions are bitboards over the nodes of a Topology, so search runs on
+ * any board. The Location based methods used by the game and the UI are
+ * for the six men's board only.
  */
 public class Frame implements Serializable {
 
-    // board and piece data
-    private Map<Location, Piece> frame, frameBak;
+    // board the position is on
+    private Topology topology;
+
+    // board data, one bit per board node for each player
+    private int red, blue;
+
+    // number of pieces left in each player's inventory
+    private int redInventory, blueInventory;
+
+    // pieces on the board and slides available to each player, kept up to date by place and clear
+    private int redCount, blueCount;
+    private int redMobility, blueMobility;
+
+    // zobrist hash of board and inventories
+    private long hash;
 
     // board fields
-	private boolean valid, validBak;
-	private Location invalidLocation, invalidLocationBak;
+	private boolean valid;
+	private Location invalidLocation;
+
+    // active mills of each player and mills formed by the last move, as mill index masks
+    private int redMills, blueMills;
+    private int redNewMills, blueNewMills;
 
-    private boolean redMill, blueMill;
-    private Location[] blueMillLocation, redMillLocation;
+    // locations changed since the last takeChanged, one bit per Location ordinal
+    public static final long ALL_LOCATIONS = (1L << Location.values().length) - 1;
+    private static final int NODE_BASE = Location.nONW.ordinal();
+    private long changed = ALL_LOCATIONS;
 
 	/**
-	 * Frame object constructor
+	 * Frame object constructor, empty six men's board
 	 */
 	public Frame() {
+        this(Topology.SIX);
+	}
+
+    /**
+     * Frame constructor for the empty board of any topology
+     * @param topology board
+     */
+    public Frame(Topology topology) {
+        this.topology = topology;
         valid = true;
-        frame = new HashMap<>(28);
+        red = 0;
+        blue = 0;
+        redInventory = topology.pieces();
+        blueInventory = topology.pieces();
+        hash = Zobrist.board(topology) ^ Zobrist.inventory(Player.RED, redInventory)
+                ^ Zobrist.inventory(Player.BLUE, blueInventory);
+    }
 
-        for (Location l: Location.values()) {
-            frame.put(l, Piece.NONE);
+    /**
+     * build a position from its pieces, not checked for reachability
+     * @param red red node mask
+     * @param blue blue node mask, disjoint from red
+     * @param redInventory red pieces left in inventory
+     * @param blueInventory blue pieces left in inventory
+     * @throws IllegalArgumentException if a player has more pieces than the inventory holds
+     */
+    static Frame position(int red, int blue, int redInventory, int blueInventory) {
+        Frame frame = new Frame();
+        int pieces = Topology.SIX.pieces();
+        if ((red & blue) != 0 || Integer.bitCount(red) + redInventory > pieces
+                || Integer.bitCount(blue) + blueInventory > pieces
+                || redInventory < 0 || blueInventory < 0 || ((red | blue) & ~Topology.SIX.allNodes()) != 0) {
+            throw new IllegalArgumentException("impossible position");
+        }
+        for (int m = red; m != 0; m &= m - 1) {
+            frame.make(Player.RED, Move.of(Move.INVENTORY, Integer.numberOfTrailingZeros(m), Move.NONE));
         }
+        for (int m = blue; m != 0; m &= m - 1) {
+            frame.make(Player.BLUE, Move.of(Move.INVENTORY, Integer.numberOfTrailingZeros(m), Move.NONE));
+        }
+        // captured pieces leave the inventory
+        int capture = Move.of(Move.NONE, Move.NONE, Move.INVENTORY);
+        while (frame.redInventory > redInventory) frame.make(Player.BLUE, capture);
+        while (frame.blueInventory > blueInventory) frame.make(Player.RED, capture);
+        frame.redNewMills = 0;
+        frame.blueNewMills = 0;
+        return frame;
+    }
 
-        frame.put(Location.iB0, Piece.B0);
-        frame.put(Location.iB1, Piece.B1);
-        frame.put(Location.iB2, Piece.B2);
-        frame.put(Location.iB3, Piece.B3);
-        frame.put(Location.iB4, Piece.B4);
-        frame.put(Location.iB5, Piece.B5);
-
-        frame.put(Location.iR0, Piece.R0);
-        frame.put(Location.iR1, Piece.R1);
-        frame.put(Location.iR2, Piece.R2);
-        frame.put(Location.iR3, Piece.R3);
-        frame.put(Location.iR4, Piece.R4);
-        frame.put(Location.iR5, Piece.R5);
-	}
+    /**
+     * Frame copy constructor
+     * @param other frame to copy
+     */
+    public Frame(Frame other) {
+        set(other);
+    }
+
+    /**
+     * copy another frame's position into this frame
+     * @param other frame to copy
+     */
+    public void set(Frame other) {
+        topology = other.topology;
+        red = other.red;
+        blue = other.blue;
+        redInventory = other.redInventory;
+        blueInventory = other.blueInventory;
+        redCount = other.redCount;
+        blueCount = other.blueCount;
+        redMobility = other.redMobility;
+        blueMobility = other.blueMobility;
+        hash = other.hash;
+        valid = other.valid;
+        invalidLocation = other.invalidLocation;
+        redMills = other.redMills;
+        blueMills = other.blueMills;
+        redNewMills = other.redNewMills;
+        blueNewMills = other.blueNewMills;
+        changed = ALL_LOCATIONS;
+    }
 
     /**
      * Get board data
@@ -56,9 +138,9 @@ public class Frame implements Serializable {
         AbstractMap.SimpleEntry<Location, Piece>[] pairs;
         pairs = new AbstractMap.SimpleEntry[28];
         int i = 0;
-        for (Location loc: frame.keySet()) {
+        for (Location loc: Location.values()) {
             if (loc != Location.NONE) {
-                pairs[i++] = new AbstractMap.SimpleEntry<>(loc, frame.get(loc));
+                pairs[i++] = new AbstractMap.SimpleEntry<>(loc, getPieceByLocation(loc));
             }
         }
         return pairs;
@@ -76,45 +158,234 @@ public class Frame implements Serializable {
 	 * Move piece to another location on the frame
 	 * @param here location to move
 	 * @param there destination location
+	 * @return move applied for the piece's owner, -1 if nothing changed
      */
-	public void move(Location here, Location there) {
-        if (frame.get(there) != Piece.NONE) {
+	public int move(Location here, Location there) {
+        redNewMills = 0;
+        blueNewMills = 0;
+        if (getPieceByLocation(there) != Piece.NONE) {
             // overlapping piece
             valid = false;
             invalidLocation = there;
-        } else {
-            frame.replace(there, frame.get(here));
-            frame.replace(here, Piece.NONE);
+            return -1;
         }
+        Piece piece = getPieceByLocation(here);
+        if (piece == Piece.NONE) return -1;
+        int m = Move.of(here.isNode() ? here.node() : Move.INVENTORY, there.node(), Move.NONE);
+        make(piece.owner(), m);
+        return m;
 	}
 
     /**
      * remove a piece from a location
      * @param there which location
+     * @return move applied for the capturing player, -1 if the location is empty
      */
-    public void remove(Location there) {
-        frame.put(there, Piece.NONE);
+    public int remove(Location there) {
+        redNewMills = 0;
+        blueNewMills = 0;
+        Piece piece = getPieceByLocation(there);
+        if (piece == Piece.NONE) return -1;
+        int m = Move.of(Move.NONE, Move.NONE, there.isNode() ? there.node() : Move.INVENTORY);
+        make(piece.owner().opponent(), m);
+        return m;
     }
 
-	/**
-	 * Create restore point of game state
-	 */
-	public void createRestorePoint() {
-        validBak = valid;
-        invalidLocationBak = invalidLocation;
-        frameBak = new HashMap<Location, Piece>(frame);
-        for (Location loc: frameBak.keySet()) {
+    /**
+     * apply a move, the move is not checked for legality
+     * @param side player making the move
+     * @param m move, to may be NONE for a capture on its own
+     */
+    public void make(Player side, int m) {
+        Player other = side.opponent();
+        int from = Move.from(m), to = Move.to(m), capture = Move.capture(m);
+        redNewMills = 0;
+        blueNewMills = 0;
+        if (to != Move.NONE) {
+            if (from == Move.INVENTORY) {
+                setInventory(side, getInventory(side) - 1);
+            } else if (from != Move.NONE) {
+                clear(side, from);
+                updateMills(from);
+            }
+            place(side, to);
+            int formed = updateMills(to) & getMills(side);
+            if (side == Player.RED) redNewMills = formed;
+            else blueNewMills = formed;
         }
-	}
+        if (capture == Move.INVENTORY) {
+            setInventory(other, getInventory(other) - 1);
+        } else if (capture != Move.NONE) {
+            clear(other, capture);
+            updateMills(capture);
+        }
+    }
 
-	/**
-	 * Restore game state
-	 */
-	public void restore() {
-        valid = validBak;
-        invalidLocation = invalidLocationBak;
-        frame = frameBak;
-	}
+    /**
+     * revert a move made with make
+     * @param side player who made the move
+     * @param m move
+     */
+    public void unmake(Player side, int m) {
+        Player other = side.opponent();
+        int from = Move.from(m), to = Move.to(m), capture = Move.capture(m);
+        redNewMills = 0;
+        blueNewMills = 0;
+        if (capture == Move.INVENTORY) {
+            setInventory(other, getInventory(other) + 1);
+        } else if (capture != Move.NONE) {
+            place(other, capture);
+            updateMills(capture);
+        }
+        if (to != Move.NONE) {
+            clear(side, to);
+            updateMills(to);
+            if (from == Move.INVENTORY) {
+                setInventory(side, getInventory(side) + 1);
+            } else if (from != Move.NONE) {
+                place(side, from);
+                updateMills(from);
+            }
+        }
+    }
+
+    /**
+     * clear an invalid move marker
+     */
+    public void validate() {
+        valid = true;
+        invalidLocation = null;
+    }
+
+    /**
+     * put a player's piece on a node
+     */
+    private void place(Player p, int node) {
+        hash ^= Zobrist.node(p, node);
+        changed |= 1L << (NODE_BASE + node);
+        int adjacent = topology.adjacent(node);
+        // neighbours can no longer slide onto the node
+        redMobility -= Integer.bitCount(adjacent & red);
+        blueMobility -= Integer.bitCount(adjacent & blue);
+        if (p == Player.RED) {
+            red |= Topology.bit(node);
+            redCount++;
+            redMobility += Integer.bitCount(adjacent & ~(red | blue));
+        } else {
+            blue |= Topology.bit(node);
+            blueCount++;
+            blueMobility += Integer.bitCount(adjacent & ~(red | blue));
+        }
+    }
+
+    /**
+     * take a player's piece off a node
+     */
+    private void clear(Player p, int node) {
+        hash ^= Zobrist.node(p, node);
+        changed |= 1L << (NODE_BASE + node);
+        int adjacent = topology.adjacent(node);
+        if (p == Player.RED) {
+            red &= ~Topology.bit(node);
+            redCount--;
+            redMobility -= Integer.bitCount(adjacent & ~(red | blue));
+        } else {
+            blue &= ~Topology.bit(node);
+            blueCount--;
+            blueMobility -= Integer.bitCount(adjacent & ~(red | blue));
+        }
+        // neighbours can now slide onto the node
+        redMobility += Integer.bitCount(adjacent & red);
+        blueMobility += Integer.bitCount(adjacent & blue);
+    }
+
+    /**
+     * set a player's inventory count
+     */
+    private void setInventory(Player p, int count) {
+        int old = getInventory(p);
+        hash ^= Zobrist.inventory(p, old) ^ Zobrist.inventory(p, count);
+        // slots between the old and new count
+        int base = Location.inventory(p, 0).ordinal();
+        changed |= ((1L << Math.max(old, count)) - (1L << Math.min(old, count))) << base;
+        if (p == Player.RED) redInventory = count;
+        else blueInventory = count;
+    }
+
+    /**
+     * get locations changed since the last call and start collecting again
+     * @return mask with bit 1 << ordinal set for each changed location
+     */
+    public long takeChanged() {
+        long c = changed;
+        changed = 0;
+        return c;
+    }
+
+    /**
+     * get board the position is on
+     */
+    public Topology getTopology() {
+        return topology;
+    }
+
+    /**
+     * get zobrist hash of board and inventories
+     * @return position hash, excluding side to move
+     */
+    public long getHash() {
+        return hash;
+    }
+
+    /**
+     * get a player's pieces on the board
+     * @param p which player
+     * @return node mask of the player's pieces
+     */
+    public int getPieces(Player p) {
+        return (p == Player.RED) ? red : blue;
+    }
+
+    /**
+     * get number of pieces in a player's inventory
+     * @param p which player
+     */
+    public int getInventory(Player p) {
+        return (p == Player.RED) ? redInventory : blueInventory;
+    }
+
+    /**
+     * get number of a player's pieces on the board
+     * @param p which player
+     */
+    public int getCount(Player p) {
+        return (p == Player.RED) ? redCount : blueCount;
+    }
+
+    /**
+     * get number of slides a player could make
+     * @param p which player
+     * @return pairs of the player's piece and an empty adjacent node
+     */
+    public int getMobility(Player p) {
+        return (p == Player.RED) ? redMobility : blueMobility;
+    }
+
+    /**
+     * can a player make any move, placing while they have inventory and sliding after
+     * @param p which player
+     */
+    public boolean hasMove(Player p) {
+        return getInventory(p) > 0 ? (red | blue) != topology.allNodes() : getMobility(p) > 0;
+    }
+
+    /**
+     * has a player lost, with fewer than 3 pieces or no move
+     * @param p player to move
+     */
+    public boolean isLost(Player p) {
+        return getCount(p) + getInventory(p) < 3 || !hasMove(p);
+    }
 
     /**
      * get piece based on board location
@@ -122,67 +393,90 @@ public class Frame implements Serializable {
      * @return piece at the location
      */
     public Piece getPieceByLocation(Location l) {
-        return frame.get(l);
+        if (l.isNode()) {
+            // pieces on the board are interchangeable
+            if ((red & bit(l)) != 0) return Piece.R0;
+            if ((blue & bit(l)) != 0) return Piece.B0;
+            return Piece.NONE;
+        } else if (l.owner() == Player.RED) {
+            return l.slot() < redInventory ? Piece.get(Player.RED, l.slot()) : Piece.NONE;
+        } else if (l.owner() == Player.BLUE) {
+            return l.slot() < blueInventory ? Piece.get(Player.BLUE, l.slot()) : Piece.NONE;
+        } else {
+            return Piece.NONE;
+        }
     }
 
     /**
-     * get which player currently has a mill
-     * @return player with a mill
+     * get which player formed a mill with the last move
+     * @return player with a new mill
      */
     public Player whoseMill() {
-        boolean redMill = false,
-                blueMill = false;
-
-        // handle mill in between turns
-        if (this.redMill || this.blueMill) {
-            if (redMill) this.redMill = false;
-            else this.blueMill = false;
+        Metrics.WHOSE_MILL.increment();
+        if (redNewMills != 0 && blueNewMills != 0) {
+            return Player.BOTH;
+        } else if (redNewMills != 0) {
+            return Player.RED;
+        } else if (blueNewMills != 0) {
+            return Player.BLUE;
+        } else {
             return Player.NONE;
         }
+    }
 
-        // possible mill locations
-        Location[][] triplets = {
-                {Location.nONW, Location.nON, Location.nONE},
-                {Location.nONE, Location.nOE, Location.nOSE},
-                {Location.nOSE, Location.nOS, Location.nOSW},
-                {Location.nOSW, Location.nOW, Location.nONW},
-                {Location.nINW, Location.nIN, Location.nINE},
-                {Location.nINE, Location.nIE, Location.nISE},
-                {Location.nISE, Location.nIS, Location.nISW},
-                {Location.nISW, Location.nIW, Location.nINW},
-        };
-
-        // check if mill exists
-        for (Location[] triplet: triplets) {
-            if (Piece.isSamePlayer(frame.get(triplet[0]), frame.get(triplet[1]),
-                    frame.get(triplet[2]))) {
-                if (Piece.isPlayers(Player.BLUE, frame.get(triplet[0]))) {
-                    if (!Arrays.equals(triplet, blueMillLocation)) {
-                        blueMill = true;
-                        blueMillLocation = triplet;
-                    } else {
-                        blueMillLocation = null;
-                    }
-                } else {
-                    if (!Arrays.equals(triplet, redMillLocation)) {
-                        redMill = true;
-                        redMillLocation = triplet;
-                    } else {
-                        blueMillLocation = null;
-                    }
-                }
-            }
-        }
+    /**
+     * get mills formed by the last move
+     * @param p which player
+     * @return mask of mill indices
+     */
+    public int getNewMills(Player p) {
+        return (p == Player.RED) ? redNewMills : blueNewMills;
+    }
 
-        this.redMill = redMill;
-        this.blueMill = blueMill;
-        if (blueMill && redMill) {
-            return Player.BOTH;
-        } else if (blueMill ^ redMill) {
-            return (blueMill) ? Player.BLUE : Player.RED;
-        } else {
-            return Player.NONE;
+    /**
+     * get mills currently on the board
+     * @param p which player
+     * @return mask of mill indices
+     */
+    public int getMills(Player p) {
+        return (p == Player.RED) ? redMills : blueMills;
+    }
+
+    /**
+     * update active mills through a changed node
+     * @param node node index
+     * @return mills through the node that were not active before
+     */
+    private int updateMills(int node) {
+        int through = topology.millsThrough(node);
+        int before = (redMills | blueMills) & through;
+        redMills = (redMills & ~through) | millsOf(red, through);
+        blueMills = (blueMills & ~through) | millsOf(blue, through);
+        return ((redMills | blueMills) & through) & ~before;
+    }
+
+    /**
+     * get which candidate mills are fully held by some pieces
+     * @param pieces node mask of a player's pieces
+     * @param candidates mask of mill indices to check
+     * @return mask of complete mill indices
+     */
+    private int millsOf(int pieces, int candidates) {
+        int found = 0;
+        for (int m = candidates; m != 0; m &= m - 1) {
+            int i = Integer.numberOfTrailingZeros(m);
+            if ((pieces & topology.mill(i)) == topology.mill(i)) found |= 1 << i;
         }
+        return found;
+    }
+
+    /**
+     * get bit of a board node
+     * @param l board location
+     * @return mask with the node's bit set
+     */
+    private static int bit(Location l) {
+        return Topology.bit(l.node());
     }
 
     /**
@@ -191,10 +485,8 @@ public class Frame implements Serializable {
      * @return is inventory empty
      */
     public boolean isInventoryEmpty(Player player) {
-        for (Location l: Location.getInventory(player))
-            if (frame.get(l) != Piece.NONE) return false;
-
-        return true;
+        if (player == Player.RED) return redInventory == 0;
+        else return blueInventory == 0;
     }
 
     /**
@@ -205,179 +497,18 @@ public class Frame implements Serializable {
      */
     public static boolean isMoveFly(Location l1, Location l2) {
         // valid non-fly moves
-        if (either(l1, l2, Location.nONW, Location.nON)) return false;
-        else if (either(l1, l2, Location.nON, Location.nIN)) return false;
-        else if (either(l1, l2, Location.nON, Location.nONE)) return false;
-        else if (either(l1, l2, Location.nONE, Location.nOE)) return false;
-        else if (either(l1, l2, Location.nOE, Location.nIE)) return false;
-        else if (either(l1, l2, Location.nOE, Location.nOSE)) return false;
-        else if (either(l1, l2, Location.nOSE, Location.nOS)) return false;
-        else if (either(l1, l2, Location.nOS, Location.nIS)) return false;
-        else if (either(l1, l2, Location.nOS, Location.nOSW)) return false;
-        else if (either(l1, l2, Location.nOSW, Location.nOW)) return false;
-        else if (either(l1, l2, Location.nOW, Location.nIW)) return false;
-        else if (either(l1, l2, Location.nOW, Location.nONW)) return false;
-        else if (either(l1, l2, Location.nINW, Location.nIN)) return false;
-        else if (either(l1, l2, Location.nIN, Location.nINE)) return false;
-        else if (either(l1, l2, Location.nINE, Location.nIE)) return false;
-        else if (either(l1, l2, Location.nIE, Location.nISE)) return false;
-        else if (either(l1, l2, Location.nISE, Location.nIS)) return false;
-        else if (either(l1, l2, Location.nIS, Location.nISW)) return false;
-        else if (either(l1, l2, Location.nISW, Location.nIW)) return false;
-        else if (either(l1, l2, Location.nIW, Location.nINW)) return false;
-        else return true;
+        if (l1.isNode() && l2.isNode()) {
+            return (Topology.SIX.adjacent(l1.node()) & bit(l2)) == 0;
+        }
+        return true;
     }
 
     /**
-     * are either of the two parameters equal to other two parameters
-     * @param l1 first parameter
-     * @param l2 second parameter
-     * @param c1 first comparison parameter
-     * @param c2 second comparison parameter
-     * @return are first two equal to second two in any combination
-     */
-    public static boolean either(Location l1, Location l2, Location c1, Location c2) {
-        if (l1 == c1 || l1 == c2)
-            if (l2 == c1 || l2 == c2)
-                if (l1 != l2)
-                    return true;
-        return false;
-    }
-
-    
-    public boolean movePossible(Player p){
-    	
-    	boolean move = false;
-    	
-    	
-    	for (Map.Entry<Location, Piece> entry : frame.entrySet()){
-    		
-    		
-    		boolean playersColour = (frame.get(entry.getKey()).toString().charAt(0) == p.toString().charAt(0));
-    		
-    		
-    		/*
-    		if(p == Player.RED){
-    			playersColour = frame.get(entry.getKey()).toString().contains("R");
-    		}
-    		else{
-    			playersColour = frame.get(entry.getKey()).toString().contains("B");
-    		}
-    		*/
-    		
-    		
-    		if(!entry.getKey().toString().contains("i") && playersColour){
-    			
-    			ArrayList<Location> adjacentLocations = getAdjacent(entry.getKey()); //find adjacent location of this piece
-    			
-    			for(int i = 0; i < adjacentLocations.size(); i++){
-    				if(frame.get(adjacentLocations.get(i)) == Piece.NONE ){
-    					move = true;
-    				}
-    				
-    			}	
-    		}
-    	}
-    	
-    	return move;
-    	
+     * can a player slide any of their pieces
+     * @param p which player
+     * @return is there a piece with an empty adjacent node
+     */
+    public boolean movePossible(Player p) {
+        return getMobility(p) > 0;
     }
-    
-    
-    private ArrayList<Location> getAdjacent(Location loc){
-    	
-    	ArrayList<Location> adjLoc = new ArrayList<Location>();
-    	
-    	switch(loc){
-    	
-    	case nONW : adjLoc.add(Location.nON);
-    				adjLoc.add(Location.nOW);
-    				break;
-    	
-    	case nON : adjLoc.add(Location.nONE);
-    			   adjLoc.add(Location.nONW);
-    			   adjLoc.add(Location.nIN);
-    			   break;
-    			   
-    	case nONE : adjLoc.add(Location.nOE);   
-    			    adjLoc.add(Location.nON);
-    			    break;
-    			    
-    	case nOE :  adjLoc.add(Location.nONE);
-    				adjLoc.add(Location.nOSE);
-    				adjLoc.add(Location.nIE);
-    				break;
-    		
-    	case nOSE : adjLoc.add(Location.nOE);
-    				adjLoc.add(Location.nOS);
-    				break;
-    				
-    	case nOS : adjLoc.add(Location.nOSE);
-    			   adjLoc.add(Location.nOSW);
-    			   adjLoc.add(Location.nIS);
-    			   break;
-    	
-    	case nOSW : adjLoc.add(Location.nOS);
-    				adjLoc.add(Location.nOW);
-    				break;
-    				
-    	case nOW : adjLoc.add(Location.nONW);
-    			   adjLoc.add(Location.nOSW);
-    			   adjLoc.add(Location.nIW);
-    			   break;
-    			   
-    	case nINW : adjLoc.add(Location.nIN);
-    				adjLoc.add(Location.nIW);
-    				break;
-    				
-    	case nIN : adjLoc.add(Location.nINW);
-    			   adjLoc.add(Location.nINE);
-    			   adjLoc.add(Location.nON);
-    			   break;
-    			   
-    	case nINE : adjLoc.add(Location.nIN);
-    				adjLoc.add(Location.nIE);
-    				break;
-    				
-    	case nIE : adjLoc.add(Location.nINE);
-    			   adjLoc.add(Location.nISE);
-    			   adjLoc.add(Location.nOE);
-    			   break;
-    	
-    	case nISE : adjLoc.add(Location.nIS);
-    			   adjLoc.add(Location.nIE);
-    			   break;
-    			   
-    	case nIS : adjLoc.add(Location.nISE);
-    			   adjLoc.add(Location.nISW);
-    			   adjLoc.add(Location.nOS);
-    			   break;
-    	
-    	case nISW : adjLoc.add(Location.nIS);
-    				adjLoc.add(Location.nIW);
-    				break;
-    				
-    	case nIW : adjLoc.add(Location.nINW);
-    			   adjLoc.add(Location.nISW);
-    			   adjLoc.add(Location.nOW);
-    			   break;
-    	
-    	default : break;
-    	
-    	
-    	}
-    
-    	return adjLoc;
-    
-    
-    }    
-    
-    
-    
-    
-    
-    
-    
-    
-    
 }
@@ -4,48 +4,86 @@ import se2aa4.morris.enums.*;
 
 import java.io.Serializable;
 import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * Game logic and data
  */
 public class Game implements Serializable {
 
+    // turns without a capture before the game is drawn
+    public static final int DEFAULT_NO_CAPTURE_LIMIT = 100;
+    // occurrences of a position that draw the game
+    private static final int REPETITIONS = 3;
+
     // game board object
     private Frame frame;
+    // position before the first turn, null for the empty board
+    private Frame start;
+
+    // board changes of every turn, for restore, undo and redo
+    private Journal journal;
+
+    // position after every turn, for draws
+    private PositionHistory history;
+    private int noCaptureLimit = DEFAULT_NO_CAPTURE_LIMIT;
+    private Detail drawReason = Detail.CLEAR;
 
     // game fields
-    private State state, stateBak;
-    private Player turn, turnBak;
-    private Location sel, selBak;
-    private boolean moved, movedBak;
-    private boolean multipleMoves, multipleMovesBak;
+    private State state;
+    private Player turn;
+    private Location sel;
+    private boolean moved;
+    private boolean multipleMoves;
     private boolean blueMillExists, redMillExists;
-    private boolean removed, removedBak;
-    private boolean redInventory, redInventoryBak,
-                    blueInventory, blueInventoryBak;
+    private boolean removed;
+
+    // selection changes not yet taken by takeChanged
+    private long selChanged;
+
+    // event listeners, not saved with the game
+    private transient GameListener[] listeners, batched;
+    // events for batched listeners and depth of nested public calls
+    private transient List<GameEvent> pending;
+    private transient int calls;
 
     /**
      * Game constructor
      */
     public Game() {
         state = State.UNSTARTED;
+        sel = Location.NONE;
     }
 
     /**
      * start a new game
      */
     public void newGame() {
-        frame = new Frame();
-        state = State.IN_PROGRESS;
-        sel = Location.NONE;
-        blueMillExists = false;
-        redMillExists = false;
-        redInventory = true;
-        blueInventory = true;
-        moved = false;
-        removed = false;
         randTurn();
-        createRestorePoint();
+        newGame(turn);
+    }
+
+    /**
+     * start a new game
+     * @param first player to move first
+     */
+    public void newGame(Player first) {
+        calls++;
+        try {
+            frame = new Frame();
+            start = null;
+            journal = new Journal();
+            history = new PositionHistory();
+            state = State.IN_PROGRESS;
+            turn = first;
+            history.push(getHash(), false);
+            resetTurn();
+            fire(GameEvent.Type.STARTED, first, Location.NONE, Location.NONE);
+        } finally {
+            endCall();
+        }
     }
 
     /**
@@ -68,6 +106,17 @@ public class Game implements Serializable {
      * @return
      */
     public Detail endTurn() {
+        long start = Metrics.start();
+        calls++;
+        try {
+            return finishTurn();
+        } finally {
+            endCall();
+            Metrics.END_TURN.stop(start);
+        }
+    }
+
+    private Detail finishTurn() {
         if (multipleMoves) {
             if (turn == Player.BLUE) {
                 blueMillExists = false;
@@ -77,18 +126,20 @@ public class Game implements Serializable {
             return Detail.MULTIPLE_MOVES;
         } else if (!moved) {
             return Detail.NO_MOVE;
-        } else if (redMillExists && turn == Player.RED && !removed) {
+        } else if (redMillExists && turn == Player.RED && !removed && hasRemovable(Player.BLUE)) {
                 return Detail.MILL;
-        } else if (blueMillExists && turn == Player.BLUE && !removed) {
+        } else if (blueMillExists && turn == Player.BLUE && !removed && hasRemovable(Player.RED)) {
                 return Detail.MILL;
         } else {
+            Player mover = turn;
+            boolean captured = removed;
             nextTurn();
-            moved = false;
-            removed = false;
-            redMillExists = false;
-            blueMillExists = false;
-            sel = Location.NONE;
-            createRestorePoint();
+            journal.commit();
+            recordPosition(captured);
+            resetTurn();
+            fire(GameEvent.Type.TURN_ENDED, mover, Location.NONE, Location.NONE);
+            if (state == State.WON) fire(GameEvent.Type.WON, mover, Location.NONE, Location.NONE);
+            else if (state == State.DRAW) fire(GameEvent.Type.DRAWN, mover, Location.NONE, Location.NONE);
             return Detail.END_TURN;
         }
     }
@@ -98,29 +149,41 @@ public class Game implements Serializable {
      * @param l location on board
      */
     public void handleMove(Location l) {
-        if (sel != Location.NONE && l.toString().contains("n")) {
+        long start = Metrics.start();
+        calls++;
+        try {
+            click(l);
+        } finally {
+            endCall();
+            Metrics.HANDLE_MOVE.stop(start);
+        }
+    }
+
+    private void click(Location l) {
+        if (sel != Location.NONE && l.isNode()) {
             if (Piece.isPlayers(turn, frame.getPieceByLocation(l))) {
                 // reselect piece
-                sel = l;
+                select(l);
             }
             // piece is selected
-            if (!l.toString().contains("n")) {
+            if (!l.isNode()) {
                 // didn't click no board location
             } else {
                 // clicked board location
                 if (isInventoryEmpty(turn)) {
                     // allow moving of placed pieces
-                    if (sel.toString().contains("n")) {
+                    if (sel.isNode()) {
                         // selected piece is on board
-                        if (l.toString().contains("n")) {
-                            if (!frame.isMoveFly(sel, l))
+                        if (l.isNode()) {
+                            if (!frame.isMoveFly(sel, l)) {
                                 move(l);
                                 updateMillInfo();
+                            }
                         }
                     }
                 } else {
                     // move inventory pieces
-                    if (sel.toString().contains("i")) {
+                    if (sel.isInventory()) {
                         move(l);
                         updateMillInfo();
                     }
@@ -130,19 +193,19 @@ public class Game implements Serializable {
             if (!Piece.isPlayers(turn, frame.getPieceByLocation(l))) {
                 // clicked other players piece
                 if (turn == Player.BLUE) {
-                    if (blueMillExists && !removed) {
+                    if (blueMillExists && !removed && isRemovable(l)) {
                         // allow removal of players piece
-                        frame.remove(l);
-                        redMillExists = false;
+                        remove(l);
+                        blueMillExists = false;
                         removed = true;
                         return;
                     } else {
                         return;
                     }
                 } else {
-                    if (redMillExists && !removed) {
+                    if (redMillExists && !removed && isRemovable(l)) {
                         // allow removal of players piece
-                        frame.remove(l);
+                        remove(l);
                         redMillExists = false;
                         removed = true;
                         return;
@@ -154,60 +217,403 @@ public class Game implements Serializable {
             // select piece
             if (Piece.isPlayers(turn, frame.getPieceByLocation(l))) {
                 // player selected own piece
-                sel = l;
+                select(l);
             } else {
                 // player selected opponent's piece
                 if (turn == Player.BLUE && blueMillExists) {
-                    sel = l;
+                    select(l);
                 } else if (turn == Player.RED && redMillExists) {
-                    sel = l;
+                    select(l);
                 }
             }
         }
     }
 
+    /**
+     * search for a move for the player to move
+     * @param engine search engine
+     * @return best move, 0 if there is none
+     */
+    public int findMove(Searcher engine) {
+        return engine.search(new Frame(frame), turn);
+    }
+
+    /**
+     * get a move for the player to move from the book, or search for one
+     * @param book opening book
+     * @param engine search engine used when the position isn't in the book
+     * @return best move, 0 if there is none
+     */
+    public int findMove(OpeningBook book, Searcher engine) {
+        int move = getBookMove(book);
+        return move != 0 ? move : findMove(engine);
+    }
+
+    /**
+     * get the book move for the player to move
+     * @param book opening book
+     * @return legal book move, 0 if the position isn't in the book
+     */
+    public int getBookMove(OpeningBook book) {
+        int move = book.probe(frame, turn);
+        return move != 0 && MoveGenerator.isLegal(frame, turn, move) ? move : 0;
+    }
+
+    /**
+     * get perfect play value of the current position
+     * @param db solved database
+     * @return encoded value, see SolvedDatabase.result and distance
+     */
+    public int getPerfectValue(SolvedDatabase db) {
+        return db.probe(frame, turn);
+    }
+
+    /**
+     * get a perfect play move for the player to move
+     * @param db solved database
+     * @return best move, 0 if there is none
+     */
+    public int getPerfectMove(SolvedDatabase db) {
+        return db.bestMove(frame, turn);
+    }
+
+    /**
+     * list legal moves for the player to move
+     * @param moves array to fill, at least MoveGenerator.MAX_MOVES long
+     * @return number of moves
+     */
+    public int getLegalMoves(int[] moves) {
+        return MoveGenerator.generate(frame, turn, moves);
+    }
+
+    /**
+     * play a whole turn through the move handling logic
+     * @param move encoded move
+     * @return detail of ending the turn, NO_MOVE if the move is illegal or the game is over
+     */
+    public Detail playMove(int move) {
+        if (state != State.IN_PROGRESS || !MoveGenerator.isLegal(frame, turn, move)) return Detail.NO_MOVE;
+        calls++;
+        try {
+            return clickMove(move);
+        } finally {
+            endCall();
+        }
+    }
+
+    /**
+     * click through a move without checking it first
+     * @param move encoded move, any combination of nodes
+     * @return detail of ending the turn, the turn is restored unless it ended
+     */
+    Detail clickMove(int move) {
+        Player other = turn.opponent();
+        if (Move.from(move) == Move.INVENTORY && frame.getInventory(turn) > 0) {
+            handleMove(Location.inventory(turn, frame.getInventory(turn) - 1));
+        } else if (Move.from(move) < Topology.SIX.nodes()) {
+            handleMove(Location.byNode(Move.from(move)));
+        }
+        if (Move.to(move) < Topology.SIX.nodes()) handleMove(Location.byNode(Move.to(move)));
+        if (Move.capture(move) == Move.INVENTORY && frame.getInventory(other) > 0) {
+            handleMove(Location.inventory(other, frame.getInventory(other) - 1));
+        } else if (Move.capture(move) < Topology.SIX.nodes()) {
+            handleMove(Location.byNode(Move.capture(move)));
+        }
+        Detail detail = endTurn();
+        if (detail != Detail.END_TURN) restore();
+        return detail;
+    }
+
     /**
      * move a piece
      * @param l location to move (the selected piece)
      */
     public void move(Location l) {
-        frame.move(sel, l);
-        sel = Location.NONE;
+        Location from = sel;
+        int m = frame.move(sel, l);
+        select(Location.NONE);
+        if (m == -1) {
+            // overlapping piece, nothing moved
+            frame.validate();
+            return;
+        }
+        journal.record(turn, m);
+        fire(from.isInventory() ? GameEvent.Type.PLACED : GameEvent.Type.MOVED, turn, from, l);
         if (moved) multipleMoves = true;
         moved = true;
-        redInventory = frame.isInventoryEmpty(Player.RED);
-        blueInventory = frame.isInventoryEmpty(Player.BLUE);
     }
 
     /**
-     * create a restore point
+     * can a piece be removed after a mill
+     * @param l location of the piece
+     * @return is it an opponent's piece on the board, or in their inventory when they have none on the board
+     */
+    private boolean isRemovable(Location l) {
+        Player other = turn.opponent();
+        if (frame.getPieceByLocation(l).owner() != other) return false;
+        return l.isNode() || frame.getPieces(other) == 0;
+    }
+
+    /**
+     * does a player have any piece a mill could remove
+     * @param p which player
      */
-    public void createRestorePoint() {
-        stateBak = state;
-        turnBak = turn;
-        selBak = sel;
-        movedBak = moved;
-        removedBak = removed;
-        multipleMovesBak = multipleMoves;
-        frame.createRestorePoint();
-        redInventoryBak = redInventory;
-        blueInventoryBak = blueInventory;
+    private boolean hasRemovable(Player p) {
+        return frame.getPieces(p) != 0 || frame.getInventory(p) > 0;
+    }
+
+    /**
+     * remove a piece
+     * @param l location of the piece
+     */
+    private void remove(Location l) {
+        int m = frame.remove(l);
+        if (m == -1) return;
+        journal.record(turn, m);
+        fire(GameEvent.Type.REMOVED, turn, l, Location.NONE);
+    }
+
+    /**
+     * clear fields of the turn in progress
+     */
+    private void resetTurn() {
+        select(Location.NONE);
+        moved = false;
+        removed = false;
+        multipleMoves = false;
+        redMillExists = false;
+        blueMillExists = false;
+        frame.validate();
     }
 
     /**
-     * restore game state
+     * restore game state to the start of the turn
      */
     public void restore() {
-        state = stateBak;
-        turn = turnBak;
-        sel = selBak;
-        moved = movedBak;
-        removed = removedBak;
-        multipleMoves = multipleMovesBak;
-        redInventory = redInventoryBak;
-        blueInventory = blueInventoryBak;
-        frame.restore();
-        createRestorePoint();
+        long start = Metrics.start();
+        calls++;
+        try {
+            journal.rollback(frame);
+            resetTurn();
+            fire(GameEvent.Type.RESTORED, turn, Location.NONE, Location.NONE);
+        } finally {
+            endCall();
+            Metrics.RESTORE.stop(start);
+        }
+    }
+
+    /**
+     * take back the last finished turn, discarding the turn in progress
+     * @return false if there is no turn to take back
+     */
+    public boolean undo() {
+        calls++;
+        try {
+            restore();
+            if (!journal.undo(frame)) return false;
+            nextTurn();
+            history.pop();
+            state = State.IN_PROGRESS;
+            drawReason = Detail.CLEAR;
+            fire(GameEvent.Type.UNDONE, turn, Location.NONE, Location.NONE);
+            return true;
+        } finally {
+            endCall();
+        }
+    }
+
+    /**
+     * replay the last turn taken back, discarding the turn in progress
+     * @return false if there is no turn to replay
+     */
+    public boolean redo() {
+        calls++;
+        try {
+            restore();
+            if (!journal.redo(frame)) return false;
+            fire(GameEvent.Type.REDONE, turn, Location.NONE, Location.NONE);
+            nextTurn();
+            recordPosition(Move.capture(getTurnMove(getTurnCount() - 1)) != Move.NONE);
+            if (state == State.WON) fire(GameEvent.Type.WON, turn.opponent(), Location.NONE, Location.NONE);
+            else if (state == State.DRAW) fire(GameEvent.Type.DRAWN, turn.opponent(), Location.NONE, Location.NONE);
+            return true;
+        } finally {
+            endCall();
+        }
+    }
+
+    /**
+     * rebuild a game from its played turns
+     * @param first player who moved first
+     * @param moves move of each turn, see Journal.getMove
+     * @param count number of turns
+     * @param state state after the last turn
+     * @return game at the start of the next turn
+     */
+    public static Game replay(Player first, int[] moves, int count, State state) {
+        return replay(null, first, moves, count, state);
+    }
+
+    /**
+     * rebuild a game from its played turns after a given start position
+     * @param start position before the first turn, null for the empty board
+     * @param first player who moved first
+     * @param moves move of each turn, see Journal.getMove
+     * @param count number of turns
+     * @param state state after the last turn
+     * @return game at the start of the next turn
+     */
+    public static Game replay(Frame start, Player first, int[] moves, int count, State state) {
+        return replay(start, new long[0], first, moves, count, state, DEFAULT_NO_CAPTURE_LIMIT);
+    }
+
+    /**
+     * rebuild a game from its played turns after a start position reached
+     * by turns that are no longer known
+     *
+     * Positions before the last capture can't recur, so the hashes since it
+     * are all the draw rules need of the unknown turns.
+     * @param start position before the first turn, null for the empty board
+     * @param earlier hashes of the positions from the last capture up to start, oldest first
+     * @param first player who moved first
+     * @param moves move of each turn, see Journal.getMove
+     * @param count number of turns
+     * @param state state after the last turn
+     * @param noCaptureLimit turns without a capture that draw the game
+     * @return game at the start of the next turn
+     */
+    static Game replay(Frame start, long[] earlier, Player first, int[] moves, int count, State state,
+            int noCaptureLimit) {
+        Game game = new Game();
+        game.noCaptureLimit = noCaptureLimit;
+        game.frame = start == null ? new Frame() : new Frame(start);
+        game.start = start == null ? null : new Frame(start);
+        game.journal = new Journal();
+        game.history = new PositionHistory();
+        game.turn = first;
+        for (int i = 0; i < earlier.length; i++) game.history.push(earlier[i], i == 0);
+        game.history.push(game.getHash(), false);
+        for (int i = 0; i < count; i++) {
+            game.frame.make(game.turn, moves[i]);
+            game.journal.record(game.turn, moves[i]);
+            game.journal.commit();
+            game.nextTurn();
+            game.recordPosition(Move.capture(moves[i]) != Move.NONE);
+        }
+        game.state = state;
+        game.resetTurn();
+        return game;
+    }
+
+    /**
+     * add the position after a finished turn and end the game if the player
+     * to move has lost or a draw rule applies
+     * @param captured did the turn capture a piece
+     */
+    private void recordPosition(boolean captured) {
+        int repetitions = history.push(getHash(), captured);
+        if (frame.isLost(turn)) {
+            state = State.WON;
+        } else if (repetitions >= REPETITIONS) {
+            state = State.DRAW;
+            drawReason = Detail.REPETITION;
+        } else if (history.getQuiet() >= noCaptureLimit) {
+            state = State.DRAW;
+            drawReason = Detail.NO_CAPTURES;
+        }
+    }
+
+    /**
+     * set turns without a capture that draw the game
+     * @param turns number of turns, counting both players
+     */
+    public void setNoCaptureLimit(int turns) {
+        noCaptureLimit = turns;
+    }
+
+    /**
+     * get turns without a capture that draw the game
+     */
+    public int getNoCaptureLimit() {
+        return noCaptureLimit;
+    }
+
+    /**
+     * get winner of the game
+     * @return player who made the last move if the game is won, NONE otherwise
+     */
+    public Player getWinner() {
+        return state == State.WON ? turn.opponent() : Player.NONE;
+    }
+
+    /**
+     * get rule that drew the game
+     * @return REPETITION or NO_CAPTURES, CLEAR if the game isn't drawn
+     */
+    public Detail getDrawReason() {
+        return state == State.DRAW ? drawReason : Detail.CLEAR;
+    }
+
+    /**
+     * get number of finished turns
+     */
+    public int getTurnCount() {
+        return journal.getTurns();
+    }
+
+    /**
+     * get move of a finished turn
+     * @param i turn number
+     */
+    public int getTurnMove(int i) {
+        return journal.getMove(i);
+    }
+
+    /**
+     * get position before the first turn
+     * @return copy of the position, null if the game started from the empty board
+     */
+    public Frame getStart() {
+        return start == null ? null : new Frame(start);
+    }
+
+    /**
+     * get player who moved first
+     */
+    public Player getFirstTurn() {
+        return journal.getTurns() % 2 == 0 ? turn : turn.opponent();
+    }
+
+    /**
+     * get the board position
+     * @return frame of the game, not to be modified
+     */
+    Frame getFrame() {
+        return frame;
+    }
+
+    /**
+     * get the board position at the start of the turn in progress
+     * @return copy of the frame without the moves of the unfinished turn
+     */
+    Frame getTurnStartFrame() {
+        Frame f = new Frame(frame);
+        journal.revertPending(f);
+        return f;
+    }
+
+    /**
+     * get if a turn can be taken back
+     */
+    public boolean canUndo() {
+        return journal.canUndo();
+    }
+
+    /**
+     * get if a turn taken back can be replayed
+     */
+    public boolean canRedo() {
+        return journal.canRedo();
     }
 
     /**
@@ -224,6 +630,13 @@ public class Game implements Serializable {
      * update mill information
      */
     public void updateMillInfo() {
+        boolean red = redMillExists, blue = blueMillExists;
+        findMills();
+        if (redMillExists && !red) fire(GameEvent.Type.MILL, Player.RED, Location.NONE, Location.NONE);
+        if (blueMillExists && !blue) fire(GameEvent.Type.MILL, Player.BLUE, Location.NONE, Location.NONE);
+    }
+
+    private void findMills() {
         Player whoseMill = frame.whoseMill();
         if (whoseMill == Player.BLUE) {
             if (blueMillExists) {
@@ -251,6 +664,76 @@ public class Game implements Serializable {
         }
     }
 
+    /**
+     * add a listener called after each event
+     * @param listener listener to add
+     */
+    public void addListener(GameListener listener) {
+        addListener(listener, false);
+    }
+
+    /**
+     * add a listener
+     * @param listener listener to add
+     * @param batch call it once per Game call with all its events instead of after each event
+     */
+    public void addListener(GameListener listener, boolean batch) {
+        if (batch) {
+            batched = add(batched, listener);
+            if (pending == null) pending = new ArrayList<>();
+        } else {
+            listeners = add(listeners, listener);
+        }
+    }
+
+    /**
+     * remove a listener
+     * @param listener listener to remove
+     */
+    public void removeListener(GameListener listener) {
+        listeners = remove(listeners, listener);
+        batched = remove(batched, listener);
+    }
+
+    private static GameListener[] add(GameListener[] array, GameListener listener) {
+        if (array == null) return new GameListener[] {listener};
+        GameListener[] copy = Arrays.copyOf(array, array.length + 1);
+        copy[array.length] = listener;
+        return copy;
+    }
+
+    private static GameListener[] remove(GameListener[] array, GameListener listener) {
+        if (array == null) return null;
+        int n = 0;
+        GameListener[] copy = new GameListener[array.length];
+        for (GameListener l: array) {
+            if (l != listener) copy[n++] = l;
+        }
+        return n == 0 ? null : Arrays.copyOf(copy, n);
+    }
+
+    /**
+     * send an event to the listeners, nothing is allocated when there are none
+     */
+    private void fire(GameEvent.Type type, Player player, Location from, Location to) {
+        if (listeners == null && batched == null) return;
+        GameEvent event = new GameEvent(type, player, from, to);
+        if (listeners != null) {
+            for (GameListener l: listeners) l.onEvent(event);
+        }
+        if (batched != null) pending.add(event);
+    }
+
+    /**
+     * finish a public call, delivering its events to batched listeners once the outermost one ends
+     */
+    private void endCall() {
+        if (--calls > 0 || batched == null || pending.isEmpty()) return;
+        List<GameEvent> events = new ArrayList<>(pending);
+        pending.clear();
+        for (GameListener l: batched) l.onEvents(events);
+    }
+
     /**
      * get game state
      * @return
@@ -283,6 +766,51 @@ public class Game implements Serializable {
         return frame.getFrame();
     }
 
+    /**
+     * change the selected location
+     * @param l location to select, NONE to clear
+     */
+    private void select(Location l) {
+        selChanged |= 1L << sel.ordinal() | 1L << l.ordinal();
+        sel = l;
+    }
+
+    /**
+     * get locations to redraw since the last call, including selection changes
+     * @return mask with bit 1 << ordinal set for each changed location
+     */
+    public long takeChanged() {
+        if (frame == null) return 0;
+        long c = frame.takeChanged() | selChanged;
+        selChanged = 0;
+        return c;
+    }
+
+    /**
+     * get piece at a board location
+     * @param l location on board
+     * @return piece at the location
+     */
+    public Piece getPiece(Location l) {
+        return frame.getPieceByLocation(l);
+    }
+
+    /**
+     * get number of pieces in a player's inventory
+     * @param player which player
+     */
+    public int getInventory(Player player) {
+        return frame.getInventory(player);
+    }
+
+    /**
+     * get hash of the current position
+     * @return zobrist hash including side to move
+     */
+    public long getHash() {
+        return frame.getHash() ^ Zobrist.side(turn);
+    }
+
     /**
      * get if player's inventory is empty
      * @param player which player
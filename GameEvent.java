@@ -0,0 +1,91 @@
+package se2aa4.morris;
+
+import se2aa4.morris.enums.Location;
+import se2aa4.morris.enums.Player;
+
+/**
+ * Something that happened in a Game, see GameListener
+ */
+public final class GameEvent {
+
+    /**
+     * kinds of event
+     */
+    public enum Type {
+        // new game started
+        STARTED,
+        // piece placed from inventory on to, from is the inventory location
+        PLACED,
+        // piece moved from from to to
+        MOVED,
+        // opponent's piece at from removed
+        REMOVED,
+        // mill formed
+        MILL,
+        // turn ended, the opponent moves next
+        TURN_ENDED,
+        // turn in progress taken back
+        RESTORED,
+        // last turn taken back
+        UNDONE,
+        // turn taken back replayed
+        REDONE,
+        // game over, player won
+        WON,
+        // game over without a winner
+        DRAWN
+    }
+
+    private final Type type;
+    private final Player player;
+    private final Location from, to;
+
+    /**
+     * GameEvent constructor
+     * @param type kind of event
+     * @param player player who acted
+     * @param from origin location, NONE if there is none
+     * @param to destination location, NONE if there is none
+     */
+    public GameEvent(Type type, Player player, Location from, Location to) {
+        this.type = type;
+        this.player = player;
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * get kind of event
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * get player who acted, the winner for WON
+     */
+    public Player getPlayer() {
+        return player;
+    }
+
+    /**
+     * get origin location
+     * @return location, NONE if there is none
+     */
+    public Location getFrom() {
+        return from;
+    }
+
+    /**
+     * get destination location
+     * @return location, NONE if there is none
+     */
+    public Location getTo() {
+        return to;
+    }
+
+    @Override
+    public String toString() {
+        return type + " " + player + (from != Location.NONE ? " " + from : "") + (to != Location.NONE ? " " + to : "");
+    }
+}
@@ -0,0 +1,27 @@
+package se2aa4.morris;
+
+import java.util.List;
+
+/**
+ * Receives the events of a Game
+ *
+ * Listeners are called on the thread using the game, after each event or,
+ * when added as batched, once with all events of a Game call such as
+ * handleMove or endTurn.
+ */
+public interface GameListener {
+
+    /**
+     * handle an event
+     * @param event what happened
+     */
+    void onEvent(GameEvent event);
+
+    /**
+     * handle the events of one Game call, for batched listeners
+     * @param events what happened, in order
+     */
+    default void onEvents(List<GameEvent> events) {
+        for (GameEvent e: events) onEvent(e);
+    }
+}
@@ -0,0 +1,522 @@
+package se2aa4.morris;
+
+import se2aa4.morris.enums.Player;
+import se2aa4.morris.enums.State;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * Write-ahead log of the games hosted by a server
+ *
+ * Appends go to a memory buffer; a single thread writes the buffer out and
+ * syncs it, so every append made during one sync shares the next one. A
+ * record is durable once getDurable() reaches the sequence number its append
+ * returned.
+ *
+ * The log is a series of segments. Each segment starts with a snapshot file
+ * holding the position of every live game and its positions since the last
+ * capture, which the draw rules need, so older segments can be deleted and
+ * recovery rebuilds each game from the last snapshot and the turns logged
+ * since, without replaying its earlier turns. Snapshots also carry a
+ * random secret kept for the life of the log. A segment is a header
+ * followed by batches of a record count, CRC32 of the records and 12 byte
+ * records: session key, record type, a state or player byte and the move.
+ */
+public final class GameLog implements Closeable {
+
+    public static final int DEFAULT_SNAPSHOT_INTERVAL = 1 << 20;
+
+    // file layout
+    private static final int SEGMENT_MAGIC = 0x4d47574c;
+    private static final int SNAPSHOT_MAGIC = 0x4d47534e;
+    private static final int VERSION = 1;
+    private static final int RECORD_SIZE = 12;
+    private static final int BATCH_HEADER = 8;
+    private static final String SEGMENT = ".wal", SNAPSHOT = ".snap";
+
+    // record types
+    private static final byte CREATED = 1, MOVED = 2, CLOSED = 3;
+
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final int SECRET_SIZE = 32;
+
+    private final Path dir;
+    private final byte[] secret = new byte[SECRET_SIZE];
+    private final int snapshotInterval;
+    private final Thread writer;
+    private final Map<Long, Session> sessions = new HashMap<>();
+    private final Map<Long, Game> recovered = new HashMap<>();
+    private Runnable listener = () -> { };
+
+    // appends fill one buffer while the writer syncs the other
+    private ByteBuffer filling = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private ByteBuffer spare = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private long appended;
+    private volatile long durable;
+    private volatile IOException failure;
+    private boolean closing;
+
+    // written only by the writer thread after recovery
+    private FileChannel channel;
+    private long segment;
+    private int sinceSnapshot;
+
+    /**
+     * live game as seen by the log
+     */
+    private static final class Session {
+
+        // position at the last snapshot, null for the empty board, the player
+        // to move there and the positions from the last capture up to it
+        Frame start;
+        Player first;
+        long[] earlier;
+        // current position and player to move
+        final Frame frame;
+        Player turn;
+        State state = State.IN_PROGRESS;
+        // positions from the last capture up to the current one, for the draw rules
+        long[] seen;
+        int seenCount;
+        // turns since the last snapshot
+        short[] moves = new short[16];
+        int count;
+
+        Session(Frame start, long[] earlier, Player first) {
+            this.start = start;
+            this.earlier = earlier;
+            this.first = first;
+            frame = start == null ? new Frame() : new Frame(start);
+            turn = first;
+            seen = Arrays.copyOf(earlier, Math.max(16, earlier.length + 1));
+            seenCount = earlier.length;
+            see();
+        }
+
+        /**
+         * add a finished turn
+         */
+        void move(short move, State after) {
+            frame.make(turn, move & 0xffff);
+            turn = turn.opponent();
+            state = after;
+            if (Move.capture(move & 0xffff) != Move.NONE) seenCount = 0;
+            see();
+            if (count == moves.length) moves = Arrays.copyOf(moves, count * 2);
+            moves[count++] = move;
+        }
+
+        /**
+         * add the current position to those seen
+         */
+        private void see() {
+            if (seenCount == seen.length) seen = Arrays.copyOf(seen, seenCount * 2);
+            seen[seenCount++] = frame.getHash() ^ Zobrist.side(turn);
+        }
+
+        /**
+         * start counting turns from the current position
+         */
+        void rebase() {
+            start = new Frame(frame);
+            earlier = Arrays.copyOf(seen, seenCount - 1);
+            first = turn;
+            count = 0;
+        }
+    }
+
+    /**
+     * GameLog constructor, recovers the games in a directory and starts a new segment
+     * @param dir log directory, created if missing
+     * @param snapshotInterval records between snapshots
+     * @throws IOException if the directory can't be used or a snapshot is corrupt
+     */
+    public GameLog(Path dir, int snapshotInterval) throws IOException {
+        this.dir = dir;
+        this.snapshotInterval = snapshotInterval;
+        Files.createDirectories(dir);
+        if (!recover()) new SecureRandom().nextBytes(secret);
+        for (Map.Entry<Long, Session> e: sessions.entrySet()) {
+            Session s = e.getValue();
+            int[] moves = new int[s.count];
+            for (int i = 0; i < s.count; i++) moves[i] = s.moves[i] & 0xffff;
+            recovered.put(e.getKey(), Game.replay(s.start, s.earlier, s.first, moves, s.count, s.state,
+                    Game.DEFAULT_NO_CAPTURE_LIMIT));
+        }
+        startSegment(segment + 1);
+        writer = new Thread(this::write, "morris-log");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * get games that were live when the log was last written
+     * @return games by session key
+     */
+    public Map<Long, Game> getRecovered() {
+        return recovered;
+    }
+
+    /**
+     * get the log's secret, the same after every restart
+     * @return random bytes, for keying session tokens
+     */
+    public byte[] getSecret() {
+        return secret.clone();
+    }
+
+    /**
+     * set code to run after each sync, on the log thread
+     */
+    public void setListener(Runnable listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * log a new game
+     * @param key session key
+     * @param first player who moves first
+     * @return sequence number of the record
+     */
+    public long created(long key, Player first) {
+        return append(key, CREATED, first == Player.RED ? 0 : 1, 0);
+    }
+
+    /**
+     * log a finished turn
+     * @param key session key
+     * @param move move of the turn, see Journal.getMove
+     * @param state game state after the turn
+     * @return sequence number of the record
+     */
+    public long moved(long key, int move, State state) {
+        return append(key, MOVED, state.ordinal(), move);
+    }
+
+    /**
+     * log the end of a game
+     * @param key session key
+     * @return sequence number of the record
+     */
+    public long closed(long key) {
+        return append(key, CLOSED, 0, 0);
+    }
+
+    /**
+     * get sequence number of the last appended record
+     */
+    public synchronized long getAppended() {
+        return appended;
+    }
+
+    /**
+     * check if writing the log has failed, after which every append throws
+     */
+    public boolean isFailed() {
+        return failure != null;
+    }
+
+    /**
+     * get sequence number of the last record synced to disk
+     */
+    public long getDurable() {
+        return durable;
+    }
+
+    /**
+     * add a record, waiting while the buffer is full
+     */
+    private synchronized long append(long key, byte type, int aux, int move) {
+        while (filling.remaining() < RECORD_SIZE && failure == null && !closing) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("interrupted while logging", e);
+            }
+        }
+        if (failure != null) throw new UncheckedIOException(failure);
+        if (closing) throw new IllegalStateException("log is closed");
+        if (filling.position() == 0) notifyAll();
+        filling.putLong(key).put(type).put((byte) aux).putShort((short) move);
+        return ++appended;
+    }
+
+    /**
+     * sync what has been appended and stop the log thread
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            closing = true;
+            notifyAll();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+        if (failure != null) throw failure;
+    }
+
+    /**
+     * write and sync batches until closed
+     */
+    private void write() {
+        ByteBuffer header = ByteBuffer.allocate(BATCH_HEADER);
+        CRC32 crc = new CRC32();
+        try {
+            while (true) {
+                ByteBuffer batch;
+                long seq;
+                synchronized (this) {
+                    while (filling.position() == 0 && !closing) wait();
+                    if (filling.position() == 0) return;
+                    batch = filling;
+                    filling = spare;
+                    spare = batch;
+                    seq = appended;
+                    notifyAll();
+                }
+                batch.flip();
+                int records = batch.remaining() / RECORD_SIZE;
+                crc.reset();
+                crc.update(batch.duplicate());
+                header.clear();
+                header.putInt(records).putInt((int) crc.getValue()).flip();
+                ByteBuffer[] buffers = {header, batch.duplicate()};
+                while (buffers[1].hasRemaining()) channel.write(buffers);
+                channel.force(false);
+
+                while (batch.hasRemaining()) apply(batch);
+                batch.clear();
+                durable = seq;
+                listener.run();
+
+                sinceSnapshot += records;
+                if (sinceSnapshot >= snapshotInterval) startSegment(segment + 1);
+            }
+        } catch (IOException e) {
+            failure = e;
+            e.printStackTrace();
+        } catch (InterruptedException e) {
+            failure = new IOException("log thread interrupted", e);
+        } finally {
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * update the live games with one record
+     */
+    private void apply(ByteBuffer records) {
+        long key = records.getLong();
+        byte type = records.get();
+        int aux = records.get();
+        short move = records.getShort();
+        switch (type) {
+            case CREATED:
+                sessions.put(key, new Session(null, new long[0], aux == 0 ? Player.RED : Player.BLUE));
+                break;
+            case MOVED:
+                Session s = sessions.get(key);
+                if (s != null) s.move(move, State.values()[aux]);
+                break;
+            default:
+                sessions.remove(key);
+        }
+    }
+
+    /**
+     * snapshot the live games, open a new segment and delete older files
+     * @param next number of the new segment
+     */
+    private void startSegment(long next) throws IOException {
+        writeSnapshot(next);
+        if (channel != null) channel.close();
+        channel = FileChannel.open(file(next, SEGMENT), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        ByteBuffer header = ByteBuffer.allocate(SaveFormat.HEADER_SIZE);
+        header.putInt(SEGMENT_MAGIC).putShort((short) VERSION).putShort((short) 0).flip();
+        channel.write(header);
+        channel.force(true);
+        // the snapshot and segment must be on disk before the files they replace go
+        syncDirectory();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path f: files) {
+                long n = number(f);
+                if (n >= 0 && n < next) Files.delete(f);
+            }
+        }
+        segment = next;
+        sinceSnapshot = 0;
+    }
+
+    /**
+     * write the live games of the log before a segment, and count their
+     * turns from there
+     */
+    private void writeSnapshot(long n) throws IOException {
+        Path tmp = dir.resolve(n + SNAPSHOT + ".tmp");
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            buffer.putInt(SNAPSHOT_MAGIC).putShort((short) VERSION).putShort((short) 0);
+            buffer.put(secret);
+            buffer.putInt(sessions.size());
+            CRC32 crc = new CRC32();
+            for (Map.Entry<Long, Session> e: sessions.entrySet()) {
+                Session s = e.getValue();
+                int earlier = s.seenCount - 1;
+                if (buffer.remaining() < 11 + SaveFormat.POSITION_SIZE + 8 * earlier + 4) flush(out, buffer, crc);
+                buffer.putLong(e.getKey()).put((byte) s.state.ordinal());
+                SaveFormat.putPosition(buffer, s.frame, s.turn);
+                buffer.putShort((short) earlier);
+                for (int i = 0; i < earlier; i++) buffer.putLong(s.seen[i]);
+            }
+            flush(out, buffer, crc);
+            buffer.putInt((int) crc.getValue());
+            buffer.flip();
+            while (buffer.hasRemaining()) out.write(buffer);
+            out.force(true);
+        }
+        Files.move(tmp, file(n, SNAPSHOT), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        syncDirectory();
+        for (Session s: sessions.values()) s.rebase();
+    }
+
+    /**
+     * sync the log directory, so files created or renamed in it survive a crash
+     */
+    private void syncDirectory() throws IOException {
+        try (FileChannel d = FileChannel.open(dir, StandardOpenOption.READ)) {
+            d.force(true);
+        }
+    }
+
+    /**
+     * write out buffered snapshot bytes, adding all but the header to a checksum
+     */
+    private static void flush(FileChannel out, ByteBuffer buffer, CRC32 crc) throws IOException {
+        buffer.flip();
+        ByteBuffer body = buffer.duplicate();
+        if (out.position() == 0) body.position(SaveFormat.HEADER_SIZE);
+        crc.update(body);
+        while (buffer.hasRemaining()) out.write(buffer);
+        buffer.clear();
+    }
+
+    /**
+     * load the newest snapshot and replay the segments after it
+     * @return false if there was no snapshot
+     */
+    private boolean recover() throws IOException {
+        TreeMap<Long, Path> segments = new TreeMap<>();
+        long snapshot = -1;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path f: files) {
+                long n = number(f);
+                if (n < 0) continue;
+                if (f.toString().endsWith(SEGMENT)) segments.put(n, f);
+                else snapshot = Math.max(snapshot, n);
+            }
+        }
+        if (snapshot >= 0) readSnapshot(file(snapshot, SNAPSHOT));
+        for (Map.Entry<Long, Path> e: segments.tailMap(Math.max(snapshot, 0)).entrySet()) {
+            readSegment(e.getValue());
+            segment = e.getKey();
+        }
+        segment = Math.max(segment, snapshot);
+        return snapshot >= 0;
+    }
+
+    private void readSnapshot(Path path) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+        if (buffer.remaining() < SaveFormat.HEADER_SIZE + SECRET_SIZE + 8 || buffer.getInt() != SNAPSHOT_MAGIC
+                || buffer.getShort() != VERSION) {
+            throw new IOException("not a log snapshot: " + path);
+        }
+        buffer.getShort();
+        CRC32 crc = new CRC32();
+        ByteBuffer body = buffer.duplicate();
+        body.limit(buffer.limit() - 4);
+        crc.update(body);
+        if (buffer.getInt(buffer.limit() - 4) != (int) crc.getValue()) {
+            throw new IOException("checksum mismatch: " + path);
+        }
+        buffer.get(secret);
+        int count = buffer.getInt();
+        for (int i = 0; i < count; i++) {
+            long key = buffer.getLong();
+            State state = State.values()[buffer.get()];
+            Player first = buffer.get(buffer.position() + SaveFormat.POSITION_SIZE - 1) == 0 ? Player.RED : Player.BLUE;
+            Frame start = SaveFormat.getPosition(buffer);
+            long[] earlier = new long[buffer.getShort() & 0xffff];
+            for (int j = 0; j < earlier.length; j++) earlier[j] = buffer.getLong();
+            Session s = new Session(start, earlier, first);
+            s.state = state;
+            sessions.put(key, s);
+        }
+    }
+
+    /**
+     * apply the batches of a segment up to the first torn or corrupt one
+     */
+    private void readSegment(Path path) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+        if (buffer.remaining() < SaveFormat.HEADER_SIZE || buffer.getInt() != SEGMENT_MAGIC
+                || buffer.getShort() != VERSION) {
+            throw new IOException("not a log segment: " + path);
+        }
+        buffer.getShort();
+        CRC32 crc = new CRC32();
+        while (buffer.remaining() >= BATCH_HEADER) {
+            int records = buffer.getInt();
+            int checksum = buffer.getInt();
+            if (records <= 0 || records > buffer.remaining() / RECORD_SIZE) return;
+            ByteBuffer batch = buffer.slice();
+            batch.limit(records * RECORD_SIZE);
+            crc.reset();
+            crc.update(batch.duplicate());
+            if ((int) crc.getValue() != checksum) return;
+            while (batch.hasRemaining()) apply(batch);
+            buffer.position(buffer.position() + records * RECORD_SIZE);
+        }
+    }
+
+    private Path file(long n, String suffix) {
+        return dir.resolve(String.format("%016d%s", n, suffix));
+    }
+
+    /**
+     * get segment number of a log file name, -1 for other files
+     */
+    private static long number(Path f) {
+        String name = f.getFileName().toString();
+        int dot = name.indexOf('.');
+        if (dot != 16 || !(name.endsWith(SEGMENT) || name.endsWith(SNAPSHOT))) return -1;
+        try {
+            return Long.parseLong(name.substring(0, dot));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
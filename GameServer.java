@@ -0,0 +1,467 @@
+package se2aa4.morris;
+
+import se2aa4.morris.enums.Detail;
+import se2aa4.morris.enums.Player;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Paths;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Non-blocking server hosting many games for remote clients
+ *
+ * An acceptor thread hands connections to worker threads round robin. Each
+ * worker runs one selector over its connections and owns the sessions they
+ * create, so games are only touched by a single thread. See Protocol for the
+ * message format. A session token is its id tagged with an HMAC of the
+ * worker and id, so a client only reaches the sessions it was given.
+ *
+ * With a GameLog, every new game, finished turn and close is logged and its
+ * reply is held back until the log has synced it. Logged games outlive their
+ * connection until closed, and games recovered from the log go back to the
+ * worker that created them, under the same session id. Once the log has
+ * failed, writes are answered with LOG_FAILED and connections still waiting
+ * for theirs to sync are closed.
+ */
+public final class GameServer {
+
+    public static final int DEFAULT_PORT = 7777;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int INITIAL_SESSIONS = 1024;
+    private static final String TAG_ALGORITHM = "HmacSHA256";
+
+    private final ServerSocketChannel server;
+    private final Worker[] workers;
+    private final Thread acceptor;
+    private final GameLog log;
+    // key of the session tags, from the log so tokens survive a restart
+    private final SecretKeySpec tagKey;
+    private volatile boolean running = true;
+
+    /**
+     * GameServer constructor, binds and starts serving
+     * @param address address to listen on
+     * @param threads worker threads
+     * @throws IOException if the address can't be bound
+     */
+    public GameServer(InetSocketAddress address, int threads) throws IOException {
+        this(address, threads, null);
+    }
+
+    /**
+     * GameServer constructor, binds and starts serving logged games
+     * @param address address to listen on
+     * @param threads worker threads, raised to cover the workers of recovered games
+     * @param log log to write games to and recover them from, or null
+     * @throws IOException if the address can't be bound
+     */
+    public GameServer(InetSocketAddress address, int threads, GameLog log) throws IOException {
+        this.log = log;
+        byte[] secret = new byte[32];
+        if (log != null) secret = log.getSecret();
+        else new SecureRandom().nextBytes(secret);
+        tagKey = new SecretKeySpec(secret, TAG_ALGORITHM);
+        // recovered games in increasing slot order for SessionRegistry.restore
+        TreeMap<Long, Game> recovered = new TreeMap<>((a, b) ->
+                a >>> 32 != b >>> 32 ? Long.compare(a >>> 32, b >>> 32)
+                        : Integer.compare(session(a) & SessionRegistry.SLOT_MASK, session(b) & SessionRegistry.SLOT_MASK));
+        if (log != null) {
+            recovered.putAll(log.getRecovered());
+            if (!recovered.isEmpty()) threads = Math.max(threads, (int) (recovered.lastKey() >>> 32) + 1);
+        }
+        server = ServerSocketChannel.open();
+        server.bind(address);
+        workers = new Worker[threads];
+        for (int i = 0; i < threads; i++) workers[i] = new Worker(i);
+        for (Map.Entry<Long, Game> e: recovered.entrySet()) {
+            Worker worker = workers[(int) (e.getKey() >>> 32)];
+            if (!worker.registry.restore(session(e.getKey()), e.getValue(), null)) log.closed(e.getKey());
+        }
+        if (log != null) {
+            log.setListener(() -> {
+                for (Worker w: workers) w.selector.wakeup();
+            });
+        }
+        for (int i = 0; i < threads; i++) {
+            Thread thread = new Thread(workers[i], "morris-server-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+        acceptor = new Thread(this::accept, "morris-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * get bound port
+     */
+    public int getPort() throws IOException {
+        return ((InetSocketAddress) server.getLocalAddress()).getPort();
+    }
+
+    /**
+     * get number of live sessions
+     */
+    public int getSessions() {
+        int sessions = 0;
+        for (Worker w: workers) sessions += w.sessions;
+        return sessions;
+    }
+
+    /**
+     * stop accepting and close all connections
+     */
+    public void stop() throws IOException {
+        running = false;
+        server.close();
+        for (Worker w: workers) w.selector.wakeup();
+    }
+
+    /**
+     * accept connections and spread them over the workers
+     */
+    private void accept() {
+        int next = 0;
+        while (running) {
+            try {
+                SocketChannel channel = server.accept();
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                Worker worker = workers[next++ % workers.length];
+                worker.pending.add(channel);
+                worker.selector.wakeup();
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException e) {
+                if (running) e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * buffers of one client connection
+     */
+    private static final class Connection extends SessionRegistry.Owner {
+
+        final ByteBuffer in = ByteBuffer.allocate(BUFFER_SIZE);
+        final ByteBuffer out = ByteBuffer.allocate(BUFFER_SIZE);
+
+        // replies at the end of out waiting for the log to reach heldSeq
+        int held;
+        long heldSeq;
+    }
+
+    /**
+     * selector loop serving a share of the connections
+     */
+    private final class Worker implements Runnable {
+
+        private final int index;
+        private final Selector selector;
+        private final Queue<SocketChannel> pending = new ConcurrentLinkedQueue<>();
+        private final Queue<SelectionKey> held = new ArrayDeque<>();
+        private final SessionRegistry registry = new SessionRegistry(INITIAL_SESSIONS, this::tag);
+        private final Mac mac;
+        private final ByteBuffer tagInput = ByteBuffer.allocate(8);
+        private volatile int sessions;
+
+        Worker(int index) throws IOException {
+            this.index = index;
+            try {
+                mac = Mac.getInstance(TAG_ALGORITHM);
+                mac.init(tagKey);
+            } catch (GeneralSecurityException e) {
+                throw new IOException("no " + TAG_ALGORITHM, e);
+            }
+            selector = Selector.open();
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (running) {
+                    selector.select();
+                    for (SocketChannel channel; (channel = pending.poll()) != null; ) {
+                        channel.register(selector, SelectionKey.OP_READ, new Connection());
+                    }
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        try {
+                            serve(key);
+                        } catch (IOException e) {
+                            close(key);
+                        } catch (RuntimeException e) {
+                            e.printStackTrace();
+                            close(key);
+                        }
+                    }
+                    release();
+                    sessions = registry.size();
+                }
+                for (SelectionKey key: selector.keys()) close(key);
+                selector.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        /**
+         * read requests, answer them and write replies
+         */
+        private void serve(SelectionKey key) throws IOException {
+            if (!key.isValid()) return;
+            SocketChannel channel = (SocketChannel) key.channel();
+            Connection c = (Connection) key.attachment();
+            if (key.isReadable() && channel.read(c.in) < 0) {
+                close(key);
+                return;
+            }
+            pump(key);
+        }
+
+        /**
+         * handle buffered requests unless replies are held, and write what can be sent
+         */
+        private void pump(SelectionKey key) throws IOException {
+            SocketChannel channel = (SocketChannel) key.channel();
+            Connection c = (Connection) key.attachment();
+            if (c.held == 0) {
+                int start = c.out.position();
+                // once the log has failed every write is rejected, so nothing is left to wait for
+                boolean failed = log != null && log.isFailed();
+                c.in.flip();
+                process(c);
+                c.in.compact();
+                if (log != null && !failed && c.out.position() > start) {
+                    c.heldSeq = log.getAppended();
+                    if (log.getDurable() < c.heldSeq) {
+                        c.held = c.out.position() - start;
+                        held.add(key);
+                    }
+                }
+            }
+
+            int end = c.out.position();
+            c.out.flip();
+            c.out.limit(end - c.held);
+            channel.write(c.out);
+            c.out.limit(end);
+            c.out.compact();
+
+            // stop reading while replies can't be sent, and wait to write the rest
+            int ops = (c.held == 0 && c.in.hasRemaining() ? SelectionKey.OP_READ : 0)
+                    | (c.out.position() > c.held ? SelectionKey.OP_WRITE : 0);
+            key.interestOps(ops);
+        }
+
+        /**
+         * send replies the log has synced since they were held, and drop
+         * connections whose replies it never will
+         */
+        private void release() {
+            if (log == null) return;
+            long durable = log.getDurable();
+            boolean failed = log.isFailed();
+            for (int n = held.size(); n > 0; n--) {
+                SelectionKey key = held.poll();
+                if (!key.isValid()) continue;
+                Connection c = (Connection) key.attachment();
+                if (durable < c.heldSeq) {
+                    if (failed) close(key);
+                    else held.add(key);
+                    continue;
+                }
+                c.held = 0;
+                try {
+                    pump(key);
+                } catch (IOException e) {
+                    close(key);
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                    close(key);
+                }
+            }
+        }
+
+        /**
+         * handle every complete request that has room for its reply
+         */
+        private void process(Connection c) throws IOException {
+            ByteBuffer in = c.in, out = c.out;
+            while (in.hasRemaining() && out.remaining() >= Protocol.MAX_LENGTH) {
+                byte type = in.get(in.position());
+                int length = Protocol.length(type);
+                if (length < 0 || type < 0) throw new IOException("bad message type " + type);
+                if (in.remaining() < length) return;
+                in.get();
+                switch (type) {
+                    case Protocol.NEW:
+                        create(c, in.get(), out);
+                        break;
+                    case Protocol.MOVE:
+                        move(in.getLong(), in.getShort() & 0xffff, out);
+                        break;
+                    case Protocol.STATE:
+                        position(in.getLong(), out);
+                        break;
+                    default:
+                        remove(in.getLong(), out);
+                }
+            }
+        }
+
+        private void create(Connection c, byte first, ByteBuffer out) {
+            Game game = new Game();
+            if (first == Protocol.FIRST_RANDOM) game.newGame();
+            else game.newGame(first == Protocol.FIRST_BLUE ? Player.BLUE : Player.RED);
+            long token = registry.add(game, log == null ? c : null);
+            if (token == -1) {
+                out.put(Protocol.ERROR).putLong(token).put(Protocol.SERVER_FULL);
+                return;
+            }
+            if (log != null && !logged(() -> log.created(key(token), game.getFirstTurn()))) {
+                registry.remove(token);
+                out.put(Protocol.ERROR).putLong(token).put(Protocol.LOG_FAILED);
+                return;
+            }
+            out.put(Protocol.CREATED).putLong(token).put(side(game.getTurn()));
+        }
+
+        private void move(long token, int move, ByteBuffer out) {
+            Game game = registry.get(token);
+            if (game == null) {
+                out.put(Protocol.ERROR).putLong(token).put(Protocol.UNKNOWN_SESSION);
+                return;
+            }
+            Detail detail = game.playMove(move);
+            if (log != null && detail == Detail.END_TURN
+                    && !logged(() -> log.moved(key(token), game.getTurnMove(game.getTurnCount() - 1), game.getState()))) {
+                game.undo();
+                out.put(Protocol.ERROR).putLong(token).put(Protocol.LOG_FAILED);
+                return;
+            }
+            out.put(Protocol.RESULT).putLong(token).put((byte) detail.ordinal())
+                    .put((byte) game.getState().ordinal()).put(side(game.getTurn()));
+        }
+
+        private void remove(long token, ByteBuffer out) {
+            if (registry.get(token) == null) {
+                out.put(Protocol.ERROR).putLong(token).put(Protocol.UNKNOWN_SESSION);
+                return;
+            }
+            if (log != null && !logged(() -> log.closed(key(token)))) {
+                out.put(Protocol.ERROR).putLong(token).put(Protocol.LOG_FAILED);
+                return;
+            }
+            registry.remove(token);
+            out.put(Protocol.CLOSED).putLong(token);
+        }
+
+        /**
+         * append to the log
+         * @return false if the log has failed or is closed, and the change must be undone
+         */
+        private boolean logged(Runnable append) {
+            try {
+                append.run();
+                return true;
+            } catch (UncheckedIOException | IllegalStateException e) {
+                return false;
+            }
+        }
+
+        private void position(long token, ByteBuffer out) {
+            Game game = registry.get(token);
+            if (game == null) {
+                out.put(Protocol.ERROR).putLong(token).put(Protocol.UNKNOWN_SESSION);
+                return;
+            }
+            out.put(Protocol.POSITION).putLong(token);
+            SaveFormat.putPosition(out, game.getFrame(), game.getTurn());
+        }
+
+        /**
+         * get log key of a session of this worker
+         */
+        private long key(long token) {
+            return (long) index << 32 | SessionRegistry.id(token) & 0xffffffffL;
+        }
+
+        /**
+         * get tag of a session id of this worker
+         */
+        private int tag(int id) {
+            tagInput.clear();
+            tagInput.putInt(index).putInt(id).flip();
+            mac.update(tagInput);
+            return ByteBuffer.wrap(mac.doFinal()).getInt();
+        }
+
+        /**
+         * close a connection and drop its sessions unless they are logged
+         */
+        private void close(SelectionKey key) {
+            registry.removeAll((Connection) key.attachment());
+            key.cancel();
+            try {
+                key.channel().close();
+            } catch (IOException e) {
+                // already closed
+            }
+        }
+    }
+
+    /**
+     * get session id of a log key
+     */
+    private static int session(long key) {
+        return (int) key;
+    }
+
+    /**
+     * get wire value of a player
+     */
+    static byte side(Player p) {
+        return (byte) (p == Player.RED ? 0 : 1);
+    }
+
+    /**
+     * run a server until the process is stopped
+     * @param args port, worker threads and optional log directory
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        GameLog log = null;
+        if (args.length > 2) {
+            long start = System.nanoTime();
+            log = new GameLog(Paths.get(args[2]), GameLog.DEFAULT_SNAPSHOT_INTERVAL);
+            System.out.printf("recovered %d games in %d ms%n",
+                    log.getRecovered().size(), (System.nanoTime() - start) / 1000000);
+        }
+        GameServer server = new GameServer(new InetSocketAddress(port), threads, log);
+        System.out.println("listening on " + server.getPort() + " with " + server.workers.length + " workers");
+        server.acceptor.join();
+    }
+}
@@ -0,0 +1,58 @@
+package se2aa4.morris;
+
+import se2aa4.morris.enums.Player;
+
+import java.util.SplittableRandom;
+
+/**
+ * Opponent playing the move with the best static evaluation
+ */
+public final class GreedyPlayer implements Searcher {
+
+    private final SplittableRandom random;
+    private final int[] moves = new int[MoveGenerator.MAX_MOVES];
+
+    /**
+     * GreedyPlayer constructor
+     * @param seed random seed for breaking ties
+     */
+    public GreedyPlayer(long seed) {
+        random = new SplittableRandom(seed);
+    }
+
+    /**
+     * pick the move that evaluates best one ply ahead
+     * @param frame position, left unchanged
+     * @param side player to move
+     * @return best move, 0 if the player has no move
+     */
+    @Override
+    public int search(Frame frame, Player side) {
+        int n = MoveGenerator.generate(frame, side, moves);
+        int best = 0, bestScore = Integer.MIN_VALUE, ties = 0;
+        for (int i = 0; i < n; i++) {
+            frame.make(side, moves[i]);
+            int score = Engine.isLost(frame, side.opponent()) ? Engine.WIN
+                    : -Engine.evaluate(frame, side.opponent());
+            frame.unmake(side, moves[i]);
+            if (score > bestScore) {
+                bestScore = score;
+                best = moves[i];
+                ties = 1;
+            } else if (score == bestScore && random.nextInt(++ties) == 0) {
+                // uniform among equal moves
+                best = moves[i];
+            }
+        }
+        return best;
+    }
+
+    @Override
+    public void stop() {
+    }
+
+    @Override
+    public String getInfo() {
+        return "greedy";
+    }
+}
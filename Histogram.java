@@ -0,0 +1,112 @@
+package se2aa4.morris;
+
+import java.util.Arrays;
+
+/**
+ * Log-linear histogram of non-negative values such as latencies
+ *
+ * Values below 64 are exact; above that each power of two is split into 32
+ * buckets, about 3% relative precision. Recording is a single array
+ * increment and allocation free. Not thread safe; merge per-thread
+ * histograms to combine them.
+ */
+public final class Histogram {
+
+    private static final int SUB_BITS = 5;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int LINEAR = 2 * SUB_COUNT;
+    private static final int BUCKETS = LINEAR + (63 - SUB_BITS - 1) * SUB_COUNT;
+
+    private final long[] counts = new long[BUCKETS];
+    private long total, sum, max;
+
+    /**
+     * record a value
+     * @param value non-negative value, negative values count as 0
+     */
+    public void record(long value) {
+        if (value < 0) value = 0;
+        counts[bucket(value)]++;
+        total++;
+        sum += value;
+        if (value > max) max = value;
+    }
+
+    /**
+     * add another histogram's values
+     * @param other histogram to add
+     */
+    public void merge(Histogram other) {
+        for (int i = 0; i < BUCKETS; i++) counts[i] += other.counts[i];
+        total += other.total;
+        sum += other.sum;
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * forget all values
+     */
+    public void reset() {
+        Arrays.fill(counts, 0);
+        total = 0;
+        sum = 0;
+        max = 0;
+    }
+
+    /**
+     * get number of recorded values
+     */
+    public long count() {
+        return total;
+    }
+
+    /**
+     * get largest recorded value
+     */
+    public long max() {
+        return max;
+    }
+
+    /**
+     * get mean of recorded values
+     */
+    public double mean() {
+        return total == 0 ? 0 : (double) sum / total;
+    }
+
+    /**
+     * get a percentile
+     * @param p percentile from 0 to 100
+     * @return highest value of the bucket holding the percentile, at most max
+     */
+    public long percentile(double p) {
+        if (total == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(p / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) return Math.min(highest(i), max);
+        }
+        return max;
+    }
+
+    /**
+     * get bucket of a value
+     */
+    static int bucket(long value) {
+        if (value < LINEAR) return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int top = (int) (value >>> (exponent - SUB_BITS));
+        return LINEAR + (exponent - SUB_BITS - 1) * SUB_COUNT + top - SUB_COUNT;
+    }
+
+    /**
+     * get highest value of a bucket
+     */
+    static long highest(int bucket) {
+        if (bucket < LINEAR) return bucket;
+        int exponent = (bucket - LINEAR) / SUB_COUNT + SUB_BITS + 1;
+        long top = (bucket - LINEAR) % SUB_COUNT + SUB_COUNT;
+        return ((top + 1) << (exponent - SUB_BITS)) - 1;
+    }
+}
@@ -0,0 +1,150 @@
+package se2aa4.morris;
+
+import se2aa4.morris.enums.Player;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Undo and redo history of frame deltas
+ *
+ * Each entry is a move applied with Frame.make, tagged with the player who
+ * made it, so undoing and redoing a turn costs only its own entries.
+ */
+public class Journal implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    // player tag above the move bits
+    private static final int BLUE_TAG = 1 << 15;
+
+    // applied entries are [0, size), undone entries kept for redo are [size, top)
+    private int[] ops = new int[64];
+    private int size, top;
+
+    // end of each committed turn, turns applied and turns available for redo
+    private int[] ends = new int[32];
+    private int turns, turnsTop;
+
+    /**
+     * record a delta already applied to the frame, dropping any redo history
+     * @param side player who made the move
+     * @param m move passed to Frame.make
+     */
+    public void record(Player side, int m) {
+        if (size == ops.length) ops = Arrays.copyOf(ops, size * 2);
+        ops[size++] = side == Player.BLUE ? m | BLUE_TAG : m;
+        top = size;
+        turnsTop = turns;
+    }
+
+    /**
+     * close the current turn
+     */
+    public void commit() {
+        if (turns == ends.length) ends = Arrays.copyOf(ends, turns * 2);
+        ends[turns++] = size;
+        turnsTop = turns;
+    }
+
+    /**
+     * revert and drop deltas recorded since the last commit
+     * @param frame frame the deltas were applied to
+     */
+    public void rollback(Frame frame) {
+        int start = turnStart(turns);
+        if (size == start) return;
+        // recording already dropped the redo history
+        while (size > start) unmake(frame, ops[--size]);
+        top = size;
+    }
+
+    /**
+     * revert the deltas recorded since the last commit on a copy of the frame, keeping them
+     * @param frame copy of the frame the deltas were applied to
+     */
+    public void revertPending(Frame frame) {
+        for (int i = size, start = turnStart(turns); i > start; ) unmake(frame, ops[--i]);
+    }
+
+    /**
+     * revert the last committed turn
+     * @param frame frame the deltas were applied to
+     * @return false if there is nothing to undo
+     */
+    public boolean undo(Frame frame) {
+        if (turns == 0 || size != ends[turns - 1]) return false;
+        int start = turnStart(--turns);
+        while (size > start) unmake(frame, ops[--size]);
+        return true;
+    }
+
+    /**
+     * reapply the last undone turn
+     * @param frame frame the deltas were applied to
+     * @return false if there is nothing to redo
+     */
+    public boolean redo(Frame frame) {
+        if (turns == turnsTop || size != turnStart(turns)) return false;
+        int end = ends[turns++];
+        while (size < end) {
+            int op = ops[size++];
+            frame.make(player(op), op & ~BLUE_TAG);
+        }
+        return true;
+    }
+
+    /**
+     * get if a committed turn can be undone
+     */
+    public boolean canUndo() {
+        return turns > 0;
+    }
+
+    /**
+     * get if an undone turn can be redone
+     */
+    public boolean canRedo() {
+        return turns < turnsTop;
+    }
+
+    /**
+     * get number of committed turns
+     */
+    public int getTurns() {
+        return turns;
+    }
+
+    /**
+     * get a committed turn as a single move
+     * @param turn turn number, less than getTurns
+     * @return combined move of the turn, to is NONE if the turn changed nothing
+     */
+    public int getMove(int turn) {
+        int from = Move.NONE, to = Move.NONE, capture = Move.NONE;
+        for (int i = turnStart(turn); i < ends[turn]; i++) {
+            int op = ops[i];
+            if (Move.to(op) != Move.NONE) {
+                from = Move.from(op);
+                to = Move.to(op);
+            }
+            if (Move.capture(op) != Move.NONE) capture = Move.capture(op);
+        }
+        return Move.of(from, to, capture);
+    }
+
+    /**
+     * get first entry of a turn
+     */
+    private int turnStart(int turn) {
+        return turn == 0 ? 0 : ends[turn - 1];
+    }
+
+    private static void unmake(Frame frame, int op) {
+        frame.unmake(player(op), op & ~BLUE_TAG);
+    }
+
+    private static Player player(int op) {
+        return (op & BLUE_TAG) != 0 ? Player.BLUE : Player.RED;
+    }
+}
@@ -0,0 +1,145 @@
+package se2aa4.morris;
+
+import se2aa4.morris.enums.Location;
+import se2aa4.morris.enums.Piece;
+import se2aa4.morris.enums.Player;
+import se2aa4.morris.enums.State;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+import java.io.ObjectStreamField;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+/**
+ * Reader for saves of the original release, a serialized Game
+ *
+ * Game and Frame have changed shape since, so the stream's classes are
+ * read into private mirrors of the old fields instead, and the game is
+ * rebuilt from the position at its last restore point. Only the turn in
+ * progress and the ability to undo past the loaded position are lost.
+ */
+final class LegacySave {
+
+    // class names in the stream
+    private static final String GAME = "se2aa4.morris.Game";
+    private static final String FRAME = "se2aa4.morris.Frame";
+
+    private LegacySave() {
+    }
+
+    /**
+     * fields of the original Game
+     */
+    private static final class OldGame implements Serializable {
+        private static final long serialVersionUID = -6001432382403434134L;
+
+        private OldFrame frame;
+        private State state, stateBak;
+        private Player turn, turnBak;
+        private Location sel, selBak;
+        private boolean moved, movedBak;
+        private boolean multipleMoves, multipleMovesBak;
+        private boolean blueMillExists, redMillExists;
+        private boolean removed, removedBak;
+        private boolean redInventory, redInventoryBak,
+                        blueInventory, blueInventoryBak;
+    }
+
+    /**
+     * fields of the original Frame
+     */
+    private static final class OldFrame implements Serializable {
+        private static final long serialVersionUID = 5738724761851996703L;
+
+        private Map<Location, Piece> frame, frameBak;
+        private boolean valid, validBak;
+        private Location invalidLocation, invalidLocationBak;
+        private boolean redMill, blueMill;
+        private Location[] blueMillLocation, redMillLocation;
+    }
+
+    /**
+     * object stream reading the old classes into the mirrors
+     */
+    private static final class MirrorInputStream extends ObjectInputStream {
+
+        MirrorInputStream(InputStream in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected ObjectStreamClass readClassDescriptor() throws IOException, ClassNotFoundException {
+            ObjectStreamClass desc = super.readClassDescriptor();
+            if (desc.getName().equals(GAME)) return mirror(desc, OldGame.class);
+            if (desc.getName().equals(FRAME)) return mirror(desc, OldFrame.class);
+            return desc;
+        }
+
+        /**
+         * get the mirror's descriptor if its fields are laid out like the stream's
+         */
+        private static ObjectStreamClass mirror(ObjectStreamClass desc, Class<?> type) throws InvalidClassException {
+            ObjectStreamClass local = ObjectStreamClass.lookup(type);
+            ObjectStreamField[] expected = local.getFields(), actual = desc.getFields();
+            boolean same = expected.length == actual.length;
+            for (int i = 0; same && i < actual.length; i++) {
+                same = expected[i].getName().equals(actual[i].getName())
+                        && expected[i].getTypeCode() == actual[i].getTypeCode();
+            }
+            if (!same) throw new InvalidClassException(desc.getName(), "not a save of the original release");
+            return local;
+        }
+    }
+
+    /**
+     * read a serialized save
+     * @param path save file
+     * @return game at the start of the saved turn
+     * @throws IOException if the file isn't a save of the original release
+     */
+    static Game read(Path path) throws IOException {
+        OldGame old;
+        try (InputStream in = Files.newInputStream(path);
+             ObjectInputStream objects = new MirrorInputStream(in)) {
+            old = (OldGame) objects.readObject();
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new IOException("unreadable legacy save: " + path, e);
+        }
+
+        State state = old.stateBak != null ? old.stateBak : old.state;
+        Player turn = old.turnBak != null ? old.turnBak : old.turn;
+        if (state == null || state == State.UNSTARTED || old.frame == null) return new Game();
+        Map<Location, Piece> board = old.frame.frameBak != null ? old.frame.frameBak : old.frame.frame;
+        if (board == null || turn == null || turn == Player.NONE) {
+            throw new IOException("incomplete legacy save: " + path);
+        }
+
+        int red = 0, blue = 0, redInventory = 0, blueInventory = 0;
+        for (Map.Entry<Location, Piece> e: board.entrySet()) {
+            Location l = e.getKey();
+            Piece piece = e.getValue();
+            if (l == null || piece == null || piece == Piece.NONE) continue;
+            boolean isRed = piece.toString().startsWith("R");
+            if (l.isNode()) {
+                if (isRed) red |= Topology.bit(l.node());
+                else blue |= Topology.bit(l.node());
+            } else if (l.isInventory()) {
+                if (isRed) redInventory++;
+                else blueInventory++;
+            }
+        }
+        Frame start;
+        try {
+            start = Frame.position(red, blue, redInventory, blueInventory);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("impossible position in legacy save: " + path, e);
+        }
+        return Game.replay(start, turn, new int[0], 0, state);
+    }
+}
@@ -0,0 +1,195 @@
+package se2aa4.morris;
+
+import se2aa4.morris.enums.Detail;
+import se2aa4.morris.enums.Player;
+import se2aa4.morris.enums.State;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Load generator for GameServer
+ *
+ * Each connection thread plays a number of games at once, sending one move
+ * for every game per round trip. Moves are picked at random from a local copy
+ * of each game, and every reply is checked against that copy.
+ */
+public final class LoadClient {
+
+    // plies before a game is replaced by a new one
+    private static final int MAX_PLIES = 200;
+
+    private final InetSocketAddress address;
+    private final int games;
+    private final long deadline;
+    private final LongAdder moves = new LongAdder();
+    private final LongAdder restarts = new LongAdder();
+
+    private LoadClient(InetSocketAddress address, int games, long deadline) {
+        this.address = address;
+        this.games = games;
+        this.deadline = deadline;
+    }
+
+    /**
+     * one connection with its games
+     */
+    private final class Connection implements Runnable {
+
+        private final SplittableRandom random;
+        private final Histogram latency = new Histogram();
+        private final ByteBuffer out = ByteBuffer.allocate(games * Protocol.MAX_LENGTH);
+        private final ByteBuffer in = ByteBuffer.allocate(games * Protocol.MAX_LENGTH);
+        private final long[] ids = new long[games];
+        private final Game[] mirrors = new Game[games];
+        private final int[] pending = new int[games];
+        private final int[] list = new int[MoveGenerator.MAX_MOVES];
+        private SocketChannel channel;
+        private IOException failure;
+
+        Connection(long seed) {
+            random = new SplittableRandom(seed);
+            in.flip();
+        }
+
+        @Override
+        public void run() {
+            try (SocketChannel c = SocketChannel.open(address)) {
+                channel = c;
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                for (int i = 0; i < games; i++) create(i);
+                while (System.nanoTime() < deadline) round();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+
+        /**
+         * send a move for every game and check the replies
+         */
+        private void round() throws IOException {
+            out.clear();
+            for (int i = 0; i < games; i++) {
+                Game mirror = mirrors[i];
+                int n = MoveGenerator.generate(mirror.getFrame(), mirror.getTurn(), list);
+                pending[i] = list[random.nextInt(n)];
+                out.put(Protocol.MOVE).putLong(ids[i]).putShort((short) pending[i]);
+            }
+            long start = System.nanoTime();
+            send();
+            for (int i = 0; i < games; i++) {
+                receive(Protocol.RESULT);
+                latency.record(System.nanoTime() - start);
+                if (in.getLong() != ids[i]) throw new IOException("reply for another session");
+                Detail detail = Detail.values()[in.get()];
+                State state = State.values()[in.get()];
+                Player turn = in.get() == 0 ? Player.RED : Player.BLUE;
+
+                Game mirror = mirrors[i];
+                mirror.playMove(pending[i]);
+                if (detail != Detail.END_TURN || state != mirror.getState() || turn != mirror.getTurn()) {
+                    throw new IOException("server disagrees on " + Move.toString(pending[i], turn.opponent())
+                            + ": " + detail + " " + state);
+                }
+                moves.increment();
+            }
+            for (int i = 0; i < games; i++) {
+                Game mirror = mirrors[i];
+                if (mirror.getState() != State.IN_PROGRESS || mirror.getTurnCount() >= MAX_PLIES || Engine.isLost(mirror.getFrame(), mirror.getTurn())
+                        || MoveGenerator.generate(mirror.getFrame(), mirror.getTurn(), list) == 0) {
+                    close(i);
+                    create(i);
+                    restarts.increment();
+                }
+            }
+        }
+
+        private void create(int i) throws IOException {
+            Player first = random.nextBoolean() ? Player.RED : Player.BLUE;
+            out.clear();
+            out.put(Protocol.NEW).put(GameServer.side(first));
+            send();
+            receive(Protocol.CREATED);
+            ids[i] = in.getLong();
+            in.get();
+            mirrors[i] = new Game();
+            mirrors[i].newGame(first);
+        }
+
+        private void close(int i) throws IOException {
+            out.clear();
+            out.put(Protocol.CLOSE).putLong(ids[i]);
+            send();
+            receive(Protocol.CLOSED);
+            in.getLong();
+        }
+
+        private void send() throws IOException {
+            out.flip();
+            while (out.hasRemaining()) channel.write(out);
+        }
+
+        /**
+         * read one message of a type, leaving its payload in the buffer
+         */
+        private void receive(byte type) throws IOException {
+            in.compact();
+            int length = Protocol.length(type);
+            while (in.position() < length) {
+                if (channel.read(in) < 0) throw new EOFException();
+            }
+            in.flip();
+            byte actual = in.get();
+            if (actual != type) throw new IOException("expected message " + type + " but got " + actual);
+        }
+    }
+
+    /**
+     * run connections against a server and print throughput and latency
+     * @param args host, port, connections, games per connection, seconds
+     */
+    public static void main(String[] args) throws Exception {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : GameServer.DEFAULT_PORT;
+        int connections = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+        int games = args.length > 3 ? Integer.parseInt(args[3]) : 256;
+        int seconds = args.length > 4 ? Integer.parseInt(args[4]) : 10;
+
+        long start = System.nanoTime();
+        LoadClient client = new LoadClient(new InetSocketAddress(host, port), games,
+                start + TimeUnit.SECONDS.toNanos(seconds));
+        List<Connection> list = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < connections; i++) {
+            Connection c = client.new Connection(start + i);
+            list.add(c);
+            Thread thread = new Thread(c, "morris-load-" + i);
+            threads.add(thread);
+            thread.start();
+        }
+
+        Histogram latency = new Histogram();
+        for (int i = 0; i < connections; i++) {
+            threads.get(i).join();
+            Connection c = list.get(i);
+            if (c.failure != null) System.out.println("connection " + i + " failed: " + c.failure.getMessage());
+            latency.merge(c.latency);
+        }
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        long moves = client.moves.sum();
+        System.out.printf("%d connections, %d games: %d moves in %.1f s, %.0f moves/s, %d games restarted%n",
+                connections, connections * games, moves, elapsed, moves / elapsed, client.restarts.sum());
+        System.out.printf("round trip us: mean %.0f, p50 %d, p99 %d, max %d%n",
+                latency.mean() / 1000, latency.percentile(50) / 1000, latency.percentile(99) / 1000,
+                latency.max() / 1000);
+    }
+}
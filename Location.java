@@ -10,12 +10,92 @@ public enum Location {
 	nONW, nON, nONE, nOE, nOSE, nOS, nOSW, nOW,
 	nINW, nIN, nINE, nIE, nISE, nIS, nISW, nIW;
 
+    // tables indexed by ordinal
+    private static final Location[] LOCATIONS = values();
+    private static final Player[] OWNER = new Player[LOCATIONS.length];
+    private static final int[] NODE = new int[LOCATIONS.length];
+    private static final int[] SLOT = new int[LOCATIONS.length];
+    private static final Location[] NODES = new Location[nIW.ordinal() - nONW.ordinal() + 1];
+    private static final Location[][] INVENTORY = new Location[Player.values().length][];
+
+    static {
+        for (Location l: LOCATIONS) {
+            String s = l.toString();
+            OWNER[l.ordinal()] = s.startsWith("iR") ? Player.RED
+                    : s.startsWith("iB") ? Player.BLUE : Player.NONE;
+            NODE[l.ordinal()] = s.startsWith("n") ? l.ordinal() - nONW.ordinal() : -1;
+            SLOT[l.ordinal()] = OWNER[l.ordinal()] == Player.NONE ? -1
+                    : Integer.parseInt(s.substring(2));
+            if (NODE[l.ordinal()] >= 0) NODES[NODE[l.ordinal()]] = l;
+        }
+        for (Player p: Player.values()) {
+            INVENTORY[p.ordinal()] = new Location[0];
+        }
+        INVENTORY[Player.RED.ordinal()] = new Location[] {iR0, iR1, iR2, iR3, iR4, iR5};
+        INVENTORY[Player.BLUE.ordinal()] = new Location[] {iB0, iB1, iB2, iB3, iB4, iB5};
+    }
+
+    /**
+     * is location a board node
+     */
+    public boolean isNode() {
+        return NODE[ordinal()] >= 0;
+    }
+
+    /**
+     * is location an inventory slot
+     */
+    public boolean isInventory() {
+        return OWNER[ordinal()] != Player.NONE;
+    }
+
+    /**
+     * get owner of an inventory slot
+     * @return owning player, NONE for board nodes
+     */
+    public Player owner() {
+        return OWNER[ordinal()];
+    }
+
+    /**
+     * get board node index
+     * @return node index, -1 if not a board node
+     */
+    public int node() {
+        return NODE[ordinal()];
+    }
+
+    /**
+     * get inventory slot number
+     * @return slot number, -1 if not an inventory slot
+     */
+    public int slot() {
+        return SLOT[ordinal()];
+    }
+
+    /**
+     * get location of a board node
+     * @param node node index
+     */
+    public static Location byNode(int node) {
+        return NODES[node];
+    }
+
+    /**
+     * get location of an inventory slot
+     * @param p which player
+     * @param slot slot number
+     */
+    public static Location inventory(Player p, int slot) {
+        return INVENTORY[p.ordinal()][slot];
+    }
+
     /**
      * get location by string
      * @param s string representation of location
      */
     public static Location getByString(String s) {
-        for (Location l: values()) {
+        for (Location l: LOCATIONS) {
             if (l.toString().equals(s)) return l;
         }
         return null;
@@ -26,21 +106,6 @@ public enum Location {
      * @param p which player
      */
     public static Location[] getInventory(Player p) {
-        Location[] filtered = new Location[6];
-        int c = 0;
-        if (p == Player.BLUE) {
-            for (Location l: Location.values()) {
-                if (l.toString().contains("B")) {
-                    filtered[c++] = l;
-                }
-            }
-        } else {
-            for (Location l: Location.values()) {
-                if (l.toString().contains("R")) {
-                    filtered[c++] = l;
-                }
-            }
-        }
-        return filtered;
+        return INVENTORY[p.ordinal()].clone();
     }
 }
@@ -0,0 +1,419 @@
+package se2aa4.morris;
+
+import se2aa4.morris.enums.Player;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Monte Carlo tree search (UCT), threads share one tree
+ *
+ * Nodes live in fixed arrays allocated once and reused by every search, so
+ * memory stays bounded; once they run out the search carries on with
+ * playouts from the leaves it has. A node's visits and score are packed in
+ * one long and updated with a single atomic add. A visit is counted on the
+ * way down and its result added on the way back, so threads see the nodes
+ * others are exploring as lost for now (virtual loss) and spread out.
+ * Playouts run on the four ints of a position, without a Frame.
+ */
+public final class MctsEngine implements Searcher {
+
+    // expansion state of a node in first, otherwise the index of its first child
+    private static final int UNEXPANDED = -1, EXPANDING = -2;
+    private static final long VISIT = 1L << 32;
+    // results in half points for the player to move
+    private static final int LOSS = 0, DRAW = 1, WIN = 2;
+    private static final int MAX_PLAYOUT = 200;
+    private static final double EXPLORATION = 1.0;
+
+    // tree, node 0 is the root
+    private final int[] moves, counts;
+    private final AtomicIntegerArray first;
+    private final AtomicLongArray stats;
+    private final AtomicInteger size = new AtomicInteger();
+    private volatile boolean full;
+
+    private final Worker[] workers;
+    private final ExecutorService pool;
+    private long timeLimit = 1000, playoutLimit = Long.MAX_VALUE;
+    private boolean guided = true;
+    private volatile boolean abort;
+
+    // root position and results of the last search
+    private Topology topology = Topology.SIX;
+    private int rootOwn, rootOpp, rootOwnInventory, rootOppInventory;
+    private int bestMove;
+    private long elapsed;
+
+    /**
+     * MctsEngine constructor
+     * @param threads number of search threads
+     * @param nodes tree capacity in nodes, about 20 bytes each, more than MAX_MOVES to expand the root
+     */
+    public MctsEngine(int threads, int nodes) {
+        if (threads < 1) throw new IllegalArgumentException("threads " + threads);
+        if (nodes <= MoveGenerator.MAX_MOVES) throw new IllegalArgumentException("nodes " + nodes);
+        moves = new int[nodes];
+        counts = new int[nodes];
+        first = new AtomicIntegerArray(nodes);
+        stats = new AtomicLongArray(nodes);
+        workers = new Worker[threads];
+        for (int i = 0; i < threads; i++) workers[i] = new Worker(i);
+        pool = threads > 1 ? Executors.newFixedThreadPool(threads - 1, r -> {
+            Thread thread = new Thread(r, "morris-mcts");
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+    }
+
+    /**
+     * set time budget per move
+     * @param ms milliseconds
+     */
+    public void setTimeLimit(long ms) {
+        timeLimit = ms;
+    }
+
+    /**
+     * set playout budget per move for each thread
+     * @param playouts maximum playouts
+     */
+    public void setPlayoutLimit(long playouts) {
+        playoutLimit = playouts;
+    }
+
+    /**
+     * set whether playouts prefer capturing moves over uniformly random ones
+     */
+    public void setGuided(boolean guided) {
+        this.guided = guided;
+    }
+
+    /**
+     * find the best move for a player
+     * @param frame position to search, left unchanged
+     * @param side player to move
+     * @return most visited root move, 0 if the player has no move
+     */
+    @Override
+    public int search(Frame frame, Player side) {
+        long start = System.nanoTime();
+        long deadline = start + timeLimit * 1000000L;
+        abort = false;
+        Player other = side.opponent();
+        topology = frame.getTopology();
+        rootOwn = frame.getPieces(side);
+        rootOpp = frame.getPieces(other);
+        rootOwnInventory = frame.getInventory(side);
+        rootOppInventory = frame.getInventory(other);
+
+        // recycle the whole tree
+        size.set(1);
+        full = false;
+        first.set(0, UNEXPANDED);
+        stats.set(0, 0);
+        for (Worker w: workers) w.playouts = 0;
+        workers[0].reset();
+        workers[0].expand(0);
+
+        bestMove = 0;
+        int n = counts[0];
+        if (first.get(0) < 0 || n == 0) {
+            elapsed = System.nanoTime() - start;
+            return 0;
+        }
+        if (n > 1) {
+            Future<?>[] running = new Future<?>[workers.length - 1];
+            for (int i = 1; i < workers.length; i++) {
+                final Worker worker = workers[i];
+                running[i - 1] = pool.submit(() -> worker.run(deadline));
+            }
+            workers[0].run(deadline);
+            abort = true;
+            for (Future<?> f: running) {
+                try {
+                    f.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+        }
+
+        int best = first.get(0);
+        for (int c = best + 1; c < first.get(0) + n; c++) {
+            if (stats.get(c) >>> 32 > stats.get(best) >>> 32) best = c;
+        }
+        bestMove = moves[best];
+        elapsed = System.nanoTime() - start;
+        return bestMove;
+    }
+
+    /**
+     * stop a running search from another thread
+     */
+    @Override
+    public void stop() {
+        abort = true;
+    }
+
+    /**
+     * release the helper threads
+     */
+    public void shutdown() {
+        if (pool != null) pool.shutdownNow();
+    }
+
+    /**
+     * get playouts run by all threads in the last search
+     */
+    public long getPlayouts() {
+        long playouts = 0;
+        for (Worker w: workers) playouts += w.playouts;
+        return playouts;
+    }
+
+    /**
+     * get combined playout speed of the last search
+     * @return playouts per second
+     */
+    public long getPlayoutsPerSecond() {
+        return elapsed > 0 ? getPlayouts() * 1000000000L / elapsed : 0;
+    }
+
+    /**
+     * get tree nodes used by the last search
+     */
+    public int getNodes() {
+        return Math.min(size.get(), moves.length);
+    }
+
+    /**
+     * get time taken by the last search
+     * @return nanoseconds
+     */
+    public long getElapsed() {
+        return elapsed;
+    }
+
+    /**
+     * get share of playouts won by the best move in the last search
+     */
+    public double getWinRate() {
+        int f = first.get(0);
+        if (f < 0) return 0;
+        for (int c = f; c < f + counts[0]; c++) {
+            if (moves[c] == bestMove) {
+                long s = stats.get(c);
+                return s >>> 32 == 0 ? 0 : (s & 0xffffffffL) / (2.0 * (s >>> 32));
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * get summary of the last search
+     */
+    @Override
+    public String getInfo() {
+        return String.format("threads %d playouts %d pps %d nodes %d win %.3f",
+                workers.length, getPlayouts(), getPlayoutsPerSecond(), getNodes(), getWinRate());
+    }
+
+    /**
+     * search thread with its own position and random numbers
+     */
+    private final class Worker {
+
+        private final SplittableRandom random;
+        private final int[] path = new int[Engine.MAX_PLY];
+        private final int[] list = new int[MoveGenerator.MAX_MOVES];
+        private int own, opp, ownInventory, oppInventory;
+        private long playouts;
+
+        Worker(int seed) {
+            random = new SplittableRandom(seed);
+        }
+
+        /**
+         * run iterations until out of budget
+         */
+        void run(long deadline) {
+            while (!abort && playouts < playoutLimit) {
+                if ((playouts & 63) == 0 && System.nanoTime() > deadline) return;
+                iterate();
+                playouts++;
+            }
+        }
+
+        /**
+         * set the position to the root
+         */
+        void reset() {
+            own = rootOwn;
+            opp = rootOpp;
+            ownInventory = rootOwnInventory;
+            oppInventory = rootOppInventory;
+        }
+
+        /**
+         * select down the tree, expand a leaf, play out and back up the result
+         */
+        private void iterate() {
+            reset();
+            int node = 0, depth = 0;
+            path[depth++] = 0;
+            stats.getAndAdd(0, VISIT);
+            int result;
+            while (true) {
+                int f = first.get(node);
+                if (f == UNEXPANDED && (node == 0 || stats.get(node) >>> 32 >= 2) && !full
+                        && first.compareAndSet(node, UNEXPANDED, EXPANDING)) {
+                    expand(node);
+                    f = first.get(node);
+                }
+                if (f < 0 || depth == path.length) {
+                    result = playout();
+                    break;
+                }
+                if (counts[node] == 0) {
+                    // no moves or too few pieces
+                    result = LOSS;
+                    break;
+                }
+                node = select(node, f, counts[node]);
+                stats.getAndAdd(node, VISIT);
+                play(moves[node]);
+                path[depth++] = node;
+            }
+
+            // score of each node is for the player who moved into it
+            int score = WIN - result;
+            for (int i = depth - 1; i >= 0; i--) {
+                stats.getAndAdd(path[i], score);
+                score = WIN - score;
+            }
+        }
+
+        /**
+         * add the children of a claimed node
+         */
+        void expand(int node) {
+            int n = Integer.bitCount(own) + ownInventory < 3 ? 0
+                    : MoveGenerator.generate(topology, own, opp, ownInventory, oppInventory, list);
+            int start = size.getAndAdd(n);
+            if (start + n > moves.length) {
+                full = true;
+                first.set(node, UNEXPANDED);
+                return;
+            }
+            for (int i = 0; i < n; i++) {
+                moves[start + i] = list[i];
+                first.set(start + i, UNEXPANDED);
+                stats.set(start + i, 0);
+            }
+            counts[node] = n;
+            first.set(node, start);
+        }
+
+        /**
+         * pick the child with the best upper confidence bound
+         */
+        private int select(int node, int f, int n) {
+            double log = Math.log(stats.get(node) >>> 32);
+            int best = f;
+            double bestValue = -1;
+            for (int c = f; c < f + n; c++) {
+                long s = stats.get(c);
+                long visits = s >>> 32;
+                if (visits == 0) return c;
+                double value = (s & 0xffffffffL) / (2.0 * visits) + EXPLORATION * Math.sqrt(log / visits);
+                if (value > bestValue) {
+                    bestValue = value;
+                    best = c;
+                }
+            }
+            return best;
+        }
+
+        /**
+         * play random moves to the end of the game
+         * @return result for the player to move at the start
+         */
+        private int playout() {
+            for (int ply = 0; ply < MAX_PLAYOUT; ply++) {
+                int n = Integer.bitCount(own) + ownInventory < 3 ? 0
+                        : MoveGenerator.generate(topology, own, opp, ownInventory, oppInventory, list);
+                if (n == 0) return (ply & 1) == 0 ? LOSS : WIN;
+                play(pick(n));
+            }
+            return DRAW;
+        }
+
+        /**
+         * choose a playout move, a capture when guided and there is one
+         */
+        private int pick(int n) {
+            int i = random.nextInt(n);
+            if (!guided || Move.capture(list[i]) != Move.NONE) return list[i];
+            for (int j = 1; j < n; j++) {
+                int m = list[i + j < n ? i + j : i + j - n];
+                if (Move.capture(m) != Move.NONE) return m;
+            }
+            return list[i];
+        }
+
+        /**
+         * apply a move and switch sides
+         */
+        private void play(int m) {
+            int from = Move.from(m), to = Move.to(m), capture = Move.capture(m);
+            if (from == Move.INVENTORY) ownInventory--;
+            else own &= ~Topology.bit(from);
+            own |= Topology.bit(to);
+            if (capture == Move.INVENTORY) oppInventory--;
+            else if (capture != Move.NONE) opp &= ~Topology.bit(capture);
+
+            int t = own;
+            own = opp;
+            opp = t;
+            t = ownInventory;
+            ownInventory = oppInventory;
+            oppInventory = t;
+        }
+    }
+
+    /**
+     * report playout speed on the benchmark positions
+     * @param args thread count, milliseconds per position, tree size in nodes and board
+     */
+    public static void main(String[] args) {
+        int threads = args.length > 0 ? Integer.parseInt(args[0])
+                : Runtime.getRuntime().availableProcessors();
+        long ms = args.length > 1 ? Long.parseLong(args[1]) : 2000;
+        int nodes = args.length > 2 ? Integer.parseInt(args[2]) : 1 << 22;
+        Topology topology = args.length > 3 ? Topology.load(args[3]) : Topology.SIX;
+
+        Player[] sides = new Player[Engine.MAX_PLY];
+        Frame[] positions = ParallelEngine.benchPositions(topology, sides);
+        MctsEngine engine = new MctsEngine(threads, nodes);
+        engine.setTimeLimit(ms);
+        long playouts = 0, elapsed = 0;
+        for (int i = 0; i < positions.length; i++) {
+            int move = engine.search(positions[i], sides[i]);
+            playouts += engine.getPlayouts();
+            elapsed += engine.getElapsed();
+            System.out.println("position " + i + ": " + Move.toString(move, sides[i], topology)
+                    + ", " + engine.getInfo());
+        }
+        System.out.printf("%d threads: %.0f playouts/s%n", threads, playouts * 1e9 / elapsed);
+        engine.shutdown();
+    }
+}
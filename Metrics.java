@@ -0,0 +1,270 @@
+package se2aa4.morris;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Call counts and latencies of the game's hot paths
+ *
+ * Off unless the morris.metrics system property is true. ENABLED is a
+ * constant, so when it is false the JIT drops the recording code entirely.
+ * When on, each thread records into its own Histogram and reads merge them,
+ * so recording takes no locks or atomic operations. Histograms of threads
+ * that have ended are folded into one as threads come and go, so short-lived
+ * threads don't pile up. Metrics are registered
+ * as MXBeans under se2aa4.morris:type=Metrics, and morris.metrics.dump set
+ * to a number of seconds prints a report to stderr at that interval.
+ */
+public final class Metrics {
+
+    public static final boolean ENABLED = Boolean.getBoolean("morris.metrics");
+
+    public static final Timer HANDLE_MOVE = new Timer("handleMove");
+    public static final Timer END_TURN = new Timer("endTurn");
+    public static final Timer RESTORE = new Timer("restore");
+    public static final Timer SAVE = new Timer("save");
+    public static final Timer LOAD = new Timer("load");
+    // a few nanoseconds of work, cheaper to count than to time
+    public static final Counter WHOSE_MILL = new Counter("whoseMill");
+
+    private static final Timer[] TIMERS = {HANDLE_MOVE, END_TURN, RESTORE, SAVE, LOAD};
+    private static final Counter[] COUNTERS = {WHOSE_MILL};
+
+    static {
+        if (ENABLED) {
+            register();
+            long seconds = Long.getLong("morris.metrics.dump", 0);
+            if (seconds > 0) startDump(System.err, seconds, TimeUnit.SECONDS);
+        }
+    }
+
+    private Metrics() {
+    }
+
+    /**
+     * latency statistics of a timer, in nanoseconds
+     */
+    public interface TimerMXBean {
+
+        long getCount();
+
+        double getMean();
+
+        long getP50();
+
+        long getP99();
+
+        long getP999();
+
+        long getMax();
+    }
+
+    /**
+     * count of a counter
+     */
+    public interface CounterMXBean {
+
+        long getCount();
+    }
+
+    /**
+     * latency histogram of one operation
+     */
+    public static final class Timer implements TimerMXBean {
+
+        private final String name;
+        // histograms of recording threads, and the values of threads that have ended
+        private final Queue<Recorder> recorders = new ConcurrentLinkedQueue<>();
+        private final Histogram retired = new Histogram();
+        private final ThreadLocal<Histogram> local = ThreadLocal.withInitial(() -> {
+            retire();
+            Recorder r = new Recorder(Thread.currentThread());
+            recorders.add(r);
+            return r.histogram;
+        });
+
+        private Timer(String name) {
+            this.name = name;
+        }
+
+        /**
+         * record the time since a start
+         * @param start value of Metrics.start()
+         */
+        public void stop(long start) {
+            if (ENABLED) local.get().record(System.nanoTime() - start);
+        }
+
+        /**
+         * get merged values of all threads, may miss values being recorded
+         */
+        public Histogram snapshot() {
+            Histogram merged = new Histogram();
+            synchronized (retired) {
+                retire();
+                merged.merge(retired);
+                for (Recorder r: recorders) merged.merge(r.histogram);
+            }
+            return merged;
+        }
+
+        /**
+         * fold the histograms of ended threads into retired
+         */
+        private void retire() {
+            synchronized (retired) {
+                for (Iterator<Recorder> it = recorders.iterator(); it.hasNext(); ) {
+                    Recorder r = it.next();
+                    Thread thread = r.get();
+                    if (thread == null || !thread.isAlive()) {
+                        retired.merge(r.histogram);
+                        it.remove();
+                    }
+                }
+            }
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public long getCount() {
+            return snapshot().count();
+        }
+
+        @Override
+        public double getMean() {
+            return snapshot().mean();
+        }
+
+        @Override
+        public long getP50() {
+            return snapshot().percentile(50);
+        }
+
+        @Override
+        public long getP99() {
+            return snapshot().percentile(99);
+        }
+
+        @Override
+        public long getP999() {
+            return snapshot().percentile(99.9);
+        }
+
+        @Override
+        public long getMax() {
+            return snapshot().max();
+        }
+
+        /**
+         * histogram of one thread, holding the thread weakly
+         */
+        private static final class Recorder extends WeakReference<Thread> {
+
+            final Histogram histogram = new Histogram();
+
+            Recorder(Thread thread) {
+                super(thread);
+            }
+        }
+    }
+
+    /**
+     * striped count of an event
+     */
+    public static final class Counter implements CounterMXBean {
+
+        private final String name;
+        private final LongAdder count = new LongAdder();
+
+        private Counter(String name) {
+            this.name = name;
+        }
+
+        /**
+         * count one event
+         */
+        public void increment() {
+            if (ENABLED) count.increment();
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public long getCount() {
+            return count.sum();
+        }
+    }
+
+    /**
+     * get start time for Timer.stop
+     * @return current nanoTime, 0 when metrics are off
+     */
+    public static long start() {
+        return ENABLED ? System.nanoTime() : 0;
+    }
+
+    /**
+     * get a line per metric with counts and latencies in microseconds
+     */
+    public static String report() {
+        StringBuilder sb = new StringBuilder();
+        for (Timer t: TIMERS) {
+            Histogram h = t.snapshot();
+            sb.append(String.format("%-12s count %10d  mean %9.2f  p50 %9.2f  p99 %9.2f  p99.9 %9.2f  max %9.2f%n",
+                    t.name, h.count(), h.mean() / 1000, h.percentile(50) / 1000.0, h.percentile(99) / 1000.0,
+                    h.percentile(99.9) / 1000.0, h.max() / 1000.0));
+        }
+        for (Counter c: COUNTERS) {
+            sb.append(String.format("%-12s count %10d%n", c.name, c.getCount()));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * print the report periodically on a daemon thread
+     * @param out stream to print to
+     * @param period time between reports
+     * @param unit unit of the period
+     */
+    public static void startDump(PrintStream out, long period, TimeUnit unit) {
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "morris-metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleAtFixedRate(() -> out.print(report()), period, period, unit);
+    }
+
+    /**
+     * register every metric with the platform MBean server
+     */
+    private static void register() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            for (Timer t: TIMERS) {
+                server.registerMBean(t, new ObjectName("se2aa4.morris:type=Metrics,name=" + t.name));
+            }
+            for (Counter c: COUNTERS) {
+                server.registerMBean(c, new ObjectName("se2aa4.morris:type=Metrics,name=" + c.name));
+            }
+        } catch (JMException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package se2aa4.morris;
+
+import se2aa4.morris.enums.Location;
+import se2aa4.morris.enums.Player;
+
+/**
+ * Compact int encoding of a whole turn
+ *
+ * A move is from | to << 5 | capture << 10 using node indices, with
+ * INVENTORY as origin for placements and NONE when nothing is captured.
+ */
+public final class Move {
+
+    // special node values
+    public static final int INVENTORY = 30, NONE = 31;
+
+    private Move() {
+    }
+
+    /**
+     * encode a move
+     * @param from origin node or INVENTORY
+     * @param to destination node
+     * @param capture captured node, INVENTORY or NONE
+     */
+    public static int of(int from, int to, int capture) {
+        return from | to << 5 | capture << 10;
+    }
+
+    /**
+     * get origin node
+     * @param m move
+     * @return node index or INVENTORY
+     */
+    public static int from(int m) {
+        return m & 0x1f;
+    }
+
+    /**
+     * get destination node
+     * @param m move
+     */
+    public static int to(int m) {
+        return (m >>> 5) & 0x1f;
+    }
+
+    /**
+     * get captured node
+     * @param m move
+     * @return node index, INVENTORY or NONE
+     */
+    public static int capture(int m) {
+        return (m >>> 10) & 0x1f;
+    }
+
+    /**
+     * is move a placement from inventory
+     * @param m move
+     */
+    public static boolean isPlacement(int m) {
+        return from(m) == INVENTORY;
+    }
+
+    /**
+     * does move capture a piece
+     * @param m move
+     */
+    public static boolean isCapture(int m) {
+        return capture(m) != NONE;
+    }
+
+    /**
+     * get readable form of a move
+     * @param m move
+     * @param side player making the move
+     * @return e.g. iR-nON, nON-nIN or nON-nIN x nOE
+     */
+    public static String toString(int m, Player side) {
+        return toString(m, side, Topology.SIX);
+    }
+
+    /**
+     * get readable form of a move on any board
+     * @param m move
+     * @param side player making the move
+     * @param topology board the move is on, nodes off the six men's board are named by index
+     * @return e.g. iR-nON on six, 3-11 x 7 on nine
+     */
+    public static String toString(int m, Player side, Topology topology) {
+        boolean six = topology == Topology.SIX;
+        String s = (isPlacement(m) ? (side == Player.RED ? "iR" : "iB") : name(from(m), six))
+                + "-" + name(to(m), six);
+        if (capture(m) == INVENTORY) s += " x " + (side == Player.RED ? "iB" : "iR");
+        else if (capture(m) != NONE) s += " x " + name(capture(m), six);
+        return s;
+    }
+
+    /**
+     * get readable name of a board node
+     */
+    private static String name(int node, boolean six) {
+        return six ? Location.byNode(node).toString() : Integer.toString(node);
+    }
+
+    /**
+     * read a move written by toString
+     * @param s e.g. iR-nON, nON-nIN or nON-nIN x nOE
+     * @return move, -1 if s isn't a move
+     */
+    public static int parse(String s) {
+        String[] parts = s.trim().split("\\s*x\\s*");
+        String[] ends = parts[0].split("-");
+        if (parts.length > 2 || ends.length != 2) return -1;
+        int from = ends[0].equals("iR") || ends[0].equals("iB") ? INVENTORY : node(ends[0]);
+        int to = node(ends[1]);
+        int capture = parts.length == 1 ? NONE
+                : parts[1].equals("iR") || parts[1].equals("iB") ? INVENTORY : node(parts[1]);
+        if (from < 0 || to < 0 || capture < 0) return -1;
+        return of(from, to, capture);
+    }
+
+    /**
+     * get node index of a location name
+     * @return node index, -1 if the name isn't a board node
+     */
+    private static int node(String name) {
+        Location l = Location.getByString(name);
+        return l != null && l.isNode() ? l.node() : -1;
+    }
+}
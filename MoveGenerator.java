@@ -0,0 +1,154 @@
+package se2aa4.morris;
+
+import se2aa4.morris.enums.Player;
+
+/**
+ * Allocation-free legal move generator
+ *
+ * Fills caller supplied arrays with Move encoded turns: placements while
+ * the inventory has pieces, adjacent slides after that, and one move per
+ * possible capture when a mill is formed. Frames carry their board; raw
+ * board data is on the six men's board unless a Topology is given.
+ */
+public final class MoveGenerator {
+
+    // more than any position can have
+    public static final int MAX_MOVES = 256;
+
+    private static final Topology TOPOLOGY = Topology.SIX;
+
+    private MoveGenerator() {
+    }
+
+    /**
+     * generate legal moves
+     * @param frame position
+     * @param side player to move
+     * @param moves array to fill, at least MAX_MOVES long
+     * @return number of moves
+     */
+    public static int generate(Frame frame, Player side, int[] moves) {
+        Player other = side.opponent();
+        return generate(frame.getTopology(), frame.getPieces(side), frame.getPieces(other),
+                frame.getInventory(side), frame.getInventory(other), moves);
+    }
+
+    /**
+     * generate legal moves from raw board data
+     * @param own node mask of the moving player's pieces
+     * @param opp node mask of the opponent's pieces
+     * @param ownInventory pieces left in the moving player's inventory
+     * @param oppInventory pieces left in the opponent's inventory
+     * @param moves array to fill, at least MAX_MOVES long
+     * @return number of moves
+     */
+    public static int generate(int own, int opp, int ownInventory, int oppInventory, int[] moves) {
+        return generate(TOPOLOGY, own, opp, ownInventory, oppInventory, moves);
+    }
+
+    /**
+     * generate legal moves on any board
+     * @param topology board
+     * @param own node mask of the moving player's pieces
+     * @param opp node mask of the opponent's pieces
+     * @param ownInventory pieces left in the moving player's inventory
+     * @param oppInventory pieces left in the opponent's inventory
+     * @param moves array to fill, at least MAX_MOVES long
+     * @return number of moves
+     */
+    public static int generate(Topology topology, int own, int opp, int ownInventory, int oppInventory,
+            int[] moves) {
+        int empty = ~(own | opp) & topology.allNodes();
+        int n = 0;
+
+        if (ownInventory > 0) {
+            // place from inventory
+            for (int e = empty; e != 0; e &= e - 1) {
+                int to = Integer.numberOfTrailingZeros(e);
+                n = add(topology, moves, n, Move.INVENTORY, to, own | Topology.bit(to), opp, oppInventory);
+            }
+        } else {
+            // slide to an adjacent node
+            for (int p = own; p != 0; p &= p - 1) {
+                int from = Integer.numberOfTrailingZeros(p);
+                for (int e = topology.adjacent(from) & empty; e != 0; e &= e - 1) {
+                    int to = Integer.numberOfTrailingZeros(e);
+                    n = add(topology, moves, n, from, to, own & ~Topology.bit(from) | Topology.bit(to),
+                            opp, oppInventory);
+                }
+            }
+        }
+        return n;
+    }
+
+    /**
+     * is a move legal in a position
+     * @param frame position
+     * @param side player to move
+     * @param move move to check
+     */
+    public static boolean isLegal(Frame frame, Player side, int move) {
+        Player other = side.opponent();
+        Topology topology = frame.getTopology();
+        int own = frame.getPieces(side), opp = frame.getPieces(other);
+        int from = Move.from(move), to = Move.to(move), capture = Move.capture(move);
+        if (move >>> 15 != 0 || to >= topology.nodes() || ((own | opp) & Topology.bit(to)) != 0) return false;
+
+        if (frame.getInventory(side) > 0) {
+            if (from != Move.INVENTORY) return false;
+        } else {
+            if (from >= topology.nodes() || (own & Topology.bit(from)) == 0
+                    || (topology.adjacent(from) & Topology.bit(to)) == 0) return false;
+            own &= ~Topology.bit(from);
+        }
+
+        if (!formsMill(topology, own | Topology.bit(to), to)) return capture == Move.NONE;
+        if (opp != 0) return capture < topology.nodes() && (opp & Topology.bit(capture)) != 0;
+        if (frame.getInventory(other) > 0) return capture == Move.INVENTORY;
+        return capture == Move.NONE;
+    }
+
+    /**
+     * add a move and its captures if it forms a mill
+     */
+    private static int add(Topology topology, int[] moves, int n, int from, int to, int own, int opp,
+            int oppInventory) {
+        if (formsMill(topology, own, to)) {
+            if (opp != 0) {
+                for (int o = opp; o != 0; o &= o - 1) {
+                    moves[n++] = Move.of(from, to, Integer.numberOfTrailingZeros(o));
+                }
+                return n;
+            } else if (oppInventory > 0) {
+                // nothing on the board, take from the inventory
+                moves[n++] = Move.of(from, to, Move.INVENTORY);
+                return n;
+            }
+        }
+        moves[n++] = Move.of(from, to, Move.NONE);
+        return n;
+    }
+
+    /**
+     * does a piece on a node complete a mill
+     * @param own node mask of the player's pieces including the node
+     * @param node node index
+     */
+    public static boolean formsMill(int own, int node) {
+        return formsMill(TOPOLOGY, own, node);
+    }
+
+    /**
+     * does a piece on a node complete a mill on any board
+     * @param topology board
+     * @param own node mask of the player's pieces including the node
+     * @param node node index
+     */
+    public static boolean formsMill(Topology topology, int own, int node) {
+        for (int m = topology.millsThrough(node); m != 0; m &= m - 1) {
+            int mill = topology.mill(Integer.numberOfTrailingZeros(m));
+            if ((own & mill) == mill) return true;
+        }
+        return false;
+    }
+}
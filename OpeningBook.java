@@ -0,0 +1,236 @@
+package se2aa4.morris;
+
+import se2aa4.morris.enums.Player;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Memory-mapped book of opening moves keyed by canonical position
+ *
+ * An open addressing table of the position hash of each canonical form (see
+ * Symmetry) and its move in canonical coordinates, so one entry serves all
+ * symmetric positions and a probe is a canonicalization and a few reads.
+ * Positions are keyed from the mover's view, the mover's pieces as red, so
+ * the book holds for either colour moving first.
+ * A book built with a file path is mapped on the first probe, and reads as
+ * empty if the file is missing or invalid. main builds a book offline.
+ */
+public final class OpeningBook {
+
+    public static final String DEFAULT_FILENAME = "save/six.book";
+
+    // file layout
+    static final int MAGIC = 0x4d52424b;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 16;
+    static final int SLOT_SIZE = 12;
+    private static final long EMPTY = 0;
+
+    // one empty slot
+    private static final ByteBuffer NO_BOOK = header(ByteBuffer.allocate(HEADER_SIZE + SLOT_SIZE), 1, 0);
+
+    private final Path path;
+    private volatile ByteBuffer data;
+
+    /**
+     * OpeningBook constructor, the file is mapped on the first probe
+     * @param path book file
+     */
+    public OpeningBook(Path path) {
+        this.path = path;
+    }
+
+    private OpeningBook(Path path, ByteBuffer data) {
+        this.path = path;
+        this.data = data;
+    }
+
+    /**
+     * map a book file now
+     * @param path book file
+     * @return opened book
+     * @throws IOException if the file can't be read or has a wrong header
+     */
+    public static OpeningBook open(Path path) throws IOException {
+        return new OpeningBook(path, map(path));
+    }
+
+    private static ByteBuffer map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (channel.size() < HEADER_SIZE || data.getInt(0) != MAGIC || data.getInt(4) != VERSION) {
+                throw new IOException("not an opening book: " + path);
+            }
+            int slots = data.getInt(8), entries = data.getInt(12);
+            // probes end at an empty slot, so at least half must be empty
+            if (Integer.bitCount(slots) != 1 || entries < 0 || entries > slots / 2
+                    || channel.size() != HEADER_SIZE + (long) SLOT_SIZE * slots) {
+                throw new IOException("corrupt opening book: " + path);
+            }
+            return data;
+        }
+    }
+
+    /**
+     * get the mapped file, mapping it on first use
+     */
+    private ByteBuffer data() {
+        ByteBuffer d = data;
+        if (d == null) {
+            synchronized (this) {
+                if (data == null) {
+                    try {
+                        data = map(path);
+                    } catch (IOException e) {
+                        data = NO_BOOK;
+                    }
+                }
+                d = data;
+            }
+        }
+        return d;
+    }
+
+    /**
+     * get the book move of a position
+     * @param frame position
+     * @param side player to move
+     * @return move, 0 if the position isn't in the book or off the six men's board
+     */
+    public int probe(Frame frame, Player side) {
+        if (frame.getTopology() != Topology.SIX) return 0;
+        ByteBuffer d = data();
+        long canonical = Symmetry.canonical(frame.getPieces(side), frame.getPieces(side.opponent()));
+        long key = key(canonical, frame, side);
+        int mask = d.getInt(8) - 1;
+        for (int slot = slot(key, mask); ; slot = (slot + 1) & mask) {
+            int at = HEADER_SIZE + SLOT_SIZE * slot;
+            long k = d.getLong(at);
+            if (k == key) return Symmetry.move(Symmetry.inverse(Symmetry.transform(canonical)), d.getInt(at + 8));
+            if (k == EMPTY) return 0;
+        }
+    }
+
+    /**
+     * get number of positions in the book
+     */
+    public int size() {
+        return data().getInt(12);
+    }
+
+    /**
+     * get key of a position, never EMPTY
+     * @param canonical canonical form with the mover's pieces as red
+     */
+    private static long key(long canonical, Frame frame, Player side) {
+        long hash = Symmetry.hash(canonical, frame.getInventory(side), frame.getInventory(side.opponent()));
+        return hash == EMPTY ? 1 : hash;
+    }
+
+    private static int slot(long key, int mask) {
+        return (int) (key ^ key >>> 32) & mask;
+    }
+
+    private static ByteBuffer header(ByteBuffer data, int slots, int entries) {
+        data.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, slots).putInt(12, entries);
+        return data;
+    }
+
+    /**
+     * build a book of every position up to a number of plies from the start
+     *
+     * Positions are expanded by every legal move, one per canonical form,
+     * and given the move of the solved database if there is one, or else of
+     * a timed search.
+     * @param plies plies from the start position
+     * @param db solved database, or null
+     * @param engine search engine used without a database
+     * @param out book file to write
+     * @return number of positions written
+     */
+    public static int build(int plies, SolvedDatabase db, Searcher engine, Path out) throws IOException {
+        List<Long> keys = new ArrayList<>();
+        List<Integer> moves = new ArrayList<>();
+        List<Frame> level = new ArrayList<>();
+        List<Player> sides = new ArrayList<>();
+        Set<Long> seen = new HashSet<>();
+        level.add(new Frame());
+        sides.add(Player.RED);
+        int[] list = new int[MoveGenerator.MAX_MOVES];
+
+        for (int ply = 0; ply < plies && !level.isEmpty(); ply++) {
+            List<Frame> next = new ArrayList<>();
+            List<Player> nextSides = new ArrayList<>();
+            for (int i = 0; i < level.size(); i++) {
+                Frame frame = level.get(i);
+                Player side = sides.get(i);
+                if (frame.isLost(side)) continue;
+                int m = db != null ? db.bestMove(frame, side) : engine.search(frame, side);
+                if (m == 0) continue;
+                long canonical = Symmetry.canonical(frame.getPieces(side), frame.getPieces(side.opponent()));
+                keys.add(key(canonical, frame, side));
+                moves.add(Symmetry.move(Symmetry.transform(canonical), m));
+
+                int n = MoveGenerator.generate(frame, side, list);
+                for (int j = 0; j < n; j++) {
+                    Frame child = new Frame(frame);
+                    child.make(side, list[j]);
+                    Player other = side.opponent();
+                    long c = Symmetry.canonical(child.getPieces(other), child.getPieces(side));
+                    if (!seen.add(key(c, child, other))) continue;
+                    next.add(child);
+                    nextSides.add(other);
+                }
+            }
+            level = next;
+            sides = nextSides;
+        }
+
+        int slots = Integer.highestOneBit(Math.max(2, 2 * keys.size()) - 1) << 1;
+        ByteBuffer data = header(ByteBuffer.allocate(HEADER_SIZE + SLOT_SIZE * slots), slots, keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            long key = keys.get(i);
+            int slot = slot(key, slots - 1);
+            while (data.getLong(HEADER_SIZE + SLOT_SIZE * slot) != EMPTY) slot = (slot + 1) & (slots - 1);
+            data.putLong(HEADER_SIZE + SLOT_SIZE * slot, key);
+            data.putInt(HEADER_SIZE + SLOT_SIZE * slot + 8, moves.get(i));
+        }
+        if (out.getParent() != null) Files.createDirectories(out.getParent());
+        Path tmp = out.resolveSibling(out.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (data.hasRemaining()) channel.write(data);
+        }
+        Files.move(tmp, out, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return keys.size();
+    }
+
+    /**
+     * build a book
+     * @param args plies, milliseconds per position, book file and optional solved database
+     */
+    public static void main(String[] args) throws IOException {
+        int plies = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        long ms = args.length > 1 ? Long.parseLong(args[1]) : 100;
+        Path out = Paths.get(args.length > 2 ? args[2] : DEFAULT_FILENAME);
+        SolvedDatabase db = args.length > 3 ? SolvedDatabase.open(Paths.get(args[3])) : null;
+        Engine engine = new Engine(new TranspositionTable(64));
+        engine.setTimeLimit(ms);
+
+        long start = System.nanoTime();
+        int size = build(plies, db, engine, out);
+        System.out.printf("%d positions to ply %d in %d s, %s%n",
+                size, plies, (System.nanoTime() - start) / 1000000000L, out);
+    }
+}
@@ -0,0 +1,218 @@
+package se2aa4.morris;
+
+import se2aa4.morris.enums.Player;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Lazy SMP search, helper engines share one transposition table
+ */
+public final class ParallelEngine implements Searcher {
+
+    // fixed benchmark position set
+    private static final long BENCH_SEED = 6;
+    private static final int[] BENCH_PLIES = {2, 6, 10, 14, 20, 30, 40};
+
+    private final TranspositionTable table;
+    private final Engine[] helpers;
+    private final ExecutorService pool;
+    private long elapsed;
+
+    /**
+     * ParallelEngine constructor
+     * @param threads number of search threads
+     * @param table transposition table shared by all threads
+     */
+    public ParallelEngine(int threads, TranspositionTable table) {
+        if (threads < 1) throw new IllegalArgumentException("threads " + threads);
+        this.table = table;
+        helpers = new Engine[threads];
+        for (int i = 0; i < threads; i++) helpers[i] = new Engine(table);
+        pool = threads > 1 ? Executors.newFixedThreadPool(threads - 1, r -> {
+            Thread thread = new Thread(r, "morris-search");
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+    }
+
+    /**
+     * set time budget per move
+     * @param ms milliseconds
+     */
+    public void setTimeLimit(long ms) {
+        for (Engine e: helpers) e.setTimeLimit(ms);
+    }
+
+    /**
+     * set node budget per move for each thread
+     * @param nodes maximum nodes searched
+     */
+    public void setNodeLimit(long nodes) {
+        for (Engine e: helpers) e.setNodeLimit(nodes);
+    }
+
+    /**
+     * set maximum iteration depth of the main thread
+     * @param depth maximum depth in plies
+     */
+    public void setMaxDepth(int depth) {
+        helpers[0].setMaxDepth(depth);
+    }
+
+    /**
+     * find the best move for a player
+     * @param frame position to search, left unchanged
+     * @param side player to move
+     * @return best move of the main thread, 0 if the player has no move
+     */
+    @Override
+    public int search(Frame frame, Player side) {
+        long start = System.nanoTime();
+        table.newSearch();
+        for (Engine e: helpers) e.resume();
+
+        // helpers alternate starting depths so they fill the table ahead of the main thread
+        Future<?>[] running = new Future<?>[helpers.length - 1];
+        for (int i = 1; i < helpers.length; i++) {
+            final Engine helper = helpers[i];
+            final int firstDepth = 1 + i % 2;
+            running[i - 1] = pool.submit(() -> helper.iterate(frame, side, firstDepth));
+        }
+
+        int move = helpers[0].iterate(frame, side, 1);
+
+        for (int i = 1; i < helpers.length; i++) helpers[i].stop();
+        for (Future<?> f: running) {
+            try {
+                f.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+        elapsed = System.nanoTime() - start;
+        return move;
+    }
+
+    /**
+     * stop a running search from another thread
+     */
+    @Override
+    public void stop() {
+        for (Engine e: helpers) e.stop();
+    }
+
+    /**
+     * release the helper threads
+     */
+    public void shutdown() {
+        if (pool != null) pool.shutdownNow();
+    }
+
+    /**
+     * get nodes visited by all threads in the last search
+     */
+    public long getNodes() {
+        long nodes = 0;
+        for (Engine e: helpers) nodes += e.getNodes();
+        return nodes;
+    }
+
+    /**
+     * get combined search speed of the last search
+     * @return nodes per second
+     */
+    public long getNodesPerSecond() {
+        return elapsed > 0 ? getNodes() * 1000000000L / elapsed : 0;
+    }
+
+    /**
+     * get time taken by the last search
+     * @return nanoseconds
+     */
+    public long getElapsed() {
+        return elapsed;
+    }
+
+    /**
+     * get summary of the last search
+     */
+    @Override
+    public String getInfo() {
+        return "threads " + helpers.length + " depth " + helpers[0].getDepth()
+                + " score " + helpers[0].getScore() + " nodes " + getNodes()
+                + " nps " + getNodesPerSecond();
+    }
+
+    /**
+     * build the fixed benchmark positions from seeded random play
+     * @param topology board
+     * @param sides filled with the player to move in each position
+     * @return benchmark positions
+     */
+    static Frame[] benchPositions(Topology topology, Player[] sides) {
+        Frame[] positions = new Frame[BENCH_PLIES.length];
+        SplittableRandom random = new SplittableRandom(BENCH_SEED);
+        Frame frame = new Frame(topology);
+        Player side = Player.RED;
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        for (int ply = 0, i = 0; i < positions.length; ply++) {
+            if (ply == BENCH_PLIES[i]) {
+                positions[i] = new Frame(frame);
+                sides[i++] = side;
+            }
+            int n = MoveGenerator.generate(frame, side, moves);
+            if (n == 0 || Engine.isLost(frame, side)) {
+                frame = new Frame(topology);
+                side = Player.RED;
+                continue;
+            }
+            frame.make(side, moves[random.nextInt(n)]);
+            side = side.opponent();
+        }
+        return positions;
+    }
+
+    /**
+     * report parallel speedup on the benchmark positions
+     * @param args thread count, search depth, table size in megabytes and board
+     */
+    public static void main(String[] args) {
+        int threads = args.length > 0 ? Integer.parseInt(args[0])
+                : Runtime.getRuntime().availableProcessors();
+        int depth = args.length > 1 ? Integer.parseInt(args[1]) : 12;
+        int tableMb = args.length > 2 ? Integer.parseInt(args[2]) : 64;
+        Topology topology = args.length > 3 ? Topology.load(args[3]) : Topology.SIX;
+
+        Player[] sides = new Player[BENCH_PLIES.length];
+        Frame[] positions = benchPositions(topology, sides);
+        long single = 0, parallel = 0;
+        for (int i = 0; i < positions.length; i++) {
+            long t1 = timeToDepth(1, tableMb, depth, positions[i], sides[i]);
+            long tn = timeToDepth(threads, tableMb, depth, positions[i], sides[i]);
+            single += t1;
+            parallel += tn;
+            System.out.printf("position %d: 1 thread %d ms, %d threads %d ms, speedup %.2f%n",
+                    i, t1 / 1000000, threads, tn / 1000000, (double) t1 / tn);
+        }
+        System.out.printf("total: speedup %.2f with %d threads%n", (double) single / parallel, threads);
+    }
+
+    /**
+     * time a fixed depth search with a fresh table
+     * @return nanoseconds
+     */
+    private static long timeToDepth(int threads, int tableMb, int depth, Frame frame, Player side) {
+        ParallelEngine engine = new ParallelEngine(threads, new TranspositionTable(tableMb));
+        engine.setTimeLimit(Long.MAX_VALUE / 2000000L);
+        engine.setMaxDepth(depth);
+        engine.search(frame, side);
+        engine.shutdown();
+        return engine.getElapsed();
+    }
+}
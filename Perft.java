@@ -0,0 +1,286 @@
+package se2aa4.morris;
+
+import se2aa4.morris.enums.Detail;
+import se2aa4.morris.enums.Player;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Move path enumeration for testing and timing the move generator
+ *
+ * Counts the leaves of the game tree to a fixed depth; positions where the
+ * player to move has lost have no children.
+ */
+public final class Perft {
+
+    // hashed counts, keyed by position, side and depth
+    private final long[] keys, counts;
+    private final int mask;
+
+    private final int[][] moves = new int[Engine.MAX_PLY][MoveGenerator.MAX_MOVES];
+
+    /**
+     * Perft constructor without a count table
+     */
+    public Perft() {
+        keys = null;
+        counts = null;
+        mask = 0;
+    }
+
+    /**
+     * Perft constructor reusing counts of repeated subtrees
+     * @param tableBits log2 of the number of table entries
+     */
+    public Perft(int tableBits) {
+        keys = new long[1 << tableBits];
+        counts = new long[1 << tableBits];
+        mask = (1 << tableBits) - 1;
+    }
+
+    /**
+     * count leaves to a depth
+     * @param frame position, left unchanged
+     * @param side player to move
+     * @param depth depth in plies
+     * @return number of leaves
+     */
+    public long count(Frame frame, Player side, int depth) {
+        return count(frame, side, depth, 0);
+    }
+
+    private long count(Frame frame, Player side, int depth, int ply) {
+        if (depth == 0) return 1;
+        if (Engine.isLost(frame, side)) return 0;
+        int[] list = moves[ply];
+        int n = MoveGenerator.generate(frame, side, list);
+        if (depth == 1) return n;
+
+        long key = 0;
+        int slot = 0;
+        if (keys != null) {
+            key = (frame.getHash() ^ Zobrist.side(side)) + depth * 0x9e3779b97f4a7c15L;
+            slot = (int) (key ^ key >>> 32) & mask;
+            if (keys[slot] == key) return counts[slot];
+        }
+
+        long total = 0;
+        for (int i = 0; i < n; i++) {
+            frame.make(side, list[i]);
+            total += count(frame, side.opponent(), depth - 1, ply + 1);
+            frame.unmake(side, list[i]);
+        }
+
+        if (keys != null) {
+            keys[slot] = key;
+            counts[slot] = total;
+        }
+        return total;
+    }
+
+    /**
+     * count leaves to a depth from the empty board of any topology
+     * @param topology board
+     * @param depth depth in plies
+     * @return number of leaves
+     */
+    public long count(Topology topology, int depth) {
+        return count(topology, 0, 0, topology.pieces(), topology.pieces(), depth, 0);
+    }
+
+    private long count(Topology topology, int own, int opp, int ownInventory, int oppInventory,
+            int depth, int ply) {
+        if (depth == 0) return 1;
+        if (Integer.bitCount(own) + ownInventory < 3) return 0;
+        int[] list = moves[ply];
+        int n = MoveGenerator.generate(topology, own, opp, ownInventory, oppInventory, list);
+        if (depth == 1) return n;
+
+        long total = 0;
+        for (int i = 0; i < n; i++) {
+            int m = list[i];
+            int from = Move.from(m), capture = Move.capture(m);
+            int mover = own | Topology.bit(Move.to(m));
+            int moverInventory = ownInventory;
+            if (from == Move.INVENTORY) moverInventory--;
+            else mover &= ~Topology.bit(from);
+            int other = capture < Move.INVENTORY ? opp & ~Topology.bit(capture) : opp;
+            int otherInventory = capture == Move.INVENTORY ? oppInventory - 1 : oppInventory;
+            total += count(topology, other, mover, otherInventory, moverInventory, depth - 1, ply + 1);
+        }
+        return total;
+    }
+
+    /**
+     * count leaves below each root move
+     * @param frame position, left unchanged
+     * @param side player to move
+     * @param depth depth in plies, at least 1
+     * @param out filled with the root moves
+     * @return leaves below each move in out
+     */
+    public long[] divide(Frame frame, Player side, int depth, int[] out) {
+        int n = Engine.isLost(frame, side) ? 0 : MoveGenerator.generate(frame, side, out);
+        long[] result = new long[n];
+        for (int i = 0; i < n; i++) {
+            frame.make(side, out[i]);
+            result[i] = count(frame, side.opponent(), depth - 1, 1);
+            frame.unmake(side, out[i]);
+        }
+        return result;
+    }
+
+    /**
+     * count leaves with the root moves split across the common pool
+     * @param frame position, left unchanged
+     * @param side player to move
+     * @param depth depth in plies
+     * @param tableBits log2 of count table entries per task, 0 for none
+     * @return number of leaves
+     */
+    public static long parallel(Frame frame, Player side, int depth, int tableBits) {
+        if (depth == 0) return 1;
+        if (Engine.isLost(frame, side)) return 0;
+        int[] list = new int[MoveGenerator.MAX_MOVES];
+        int n = MoveGenerator.generate(frame, side, list);
+        ThreadLocal<Perft> perft = ThreadLocal.withInitial(() -> tableBits > 0 ? new Perft(tableBits) : new Perft());
+        return IntStream.range(0, n).parallel().mapToLong(i -> {
+            Frame child = new Frame(frame);
+            child.make(side, list[i]);
+            return perft.get().count(child, side.opponent(), depth - 1);
+        }).sum();
+    }
+
+    /**
+     * walk the tree through Game.handleMove and compare it with the generator
+     *
+     * At every node each click sequence that ends the turn must lead to the
+     * position of a generated move, and every generated move must end the turn.
+     * @param game game to walk, left at the same position
+     * @param depth depth in plies
+     * @return number of nodes checked
+     * @throws IllegalStateException at the first difference
+     */
+    public long check(Game game, int depth) {
+        return check(game, depth, 0);
+    }
+
+    private long check(Game game, int depth, int ply) {
+        Frame frame = game.getFrame();
+        Player side = game.getTurn();
+        if (depth == 0 || Engine.isLost(frame, side)) return 0;
+
+        int[] list = moves[ply];
+        int n = MoveGenerator.generate(frame, side, list);
+        long[] expected = new long[n];
+        for (int i = 0; i < n; i++) {
+            frame.make(side, list[i]);
+            expected[i] = frame.getHash();
+            frame.unmake(side, list[i]);
+        }
+        Arrays.sort(expected);
+
+        for (int from = 0; from < Move.NONE; from++) {
+            for (int to = 0; to < Topology.SIX.nodes(); to++) {
+                for (int capture = 0; capture <= Move.NONE; capture++) {
+                    if (isSkipped(from) || isSkipped(capture)) continue;
+                    int m = Move.of(from, to, capture);
+                    if (game.clickMove(m) != Detail.END_TURN) continue;
+                    long hash = frame.getHash();
+                    game.undo();
+                    if (Arrays.binarySearch(expected, hash) < 0) {
+                        throw new IllegalStateException("handleMove accepts " + Move.toString(m, side)
+                                + " which isn't generated, turn " + game.getTurnCount());
+                    }
+                }
+            }
+        }
+
+        long nodes = 1;
+        for (int i = 0; i < n; i++) {
+            int m = list[i];
+            long hash = hashAfter(frame, side, m);
+            if (game.clickMove(m) != Detail.END_TURN || frame.getHash() != hash) {
+                throw new IllegalStateException("handleMove rejects generated " + Move.toString(m, side)
+                        + ", turn " + game.getTurnCount());
+            }
+            nodes += check(game, depth - 1, ply + 1);
+            game.undo();
+        }
+        return nodes;
+    }
+
+    /**
+     * is a node value outside the board and not INVENTORY or NONE
+     */
+    private static boolean isSkipped(int node) {
+        return node >= Topology.SIX.nodes() && node != Move.INVENTORY && node != Move.NONE;
+    }
+
+    private static long hashAfter(Frame frame, Player side, int m) {
+        frame.make(side, m);
+        long hash = frame.getHash();
+        frame.unmake(side, m);
+        return hash;
+    }
+
+    /**
+     * run perft from the start position or a saved game
+     * @param args depth, mode (count, divide, parallel, hashed, check or board:name), optional save file
+     */
+    public static void main(String[] args) throws IOException {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        String mode = args.length > 1 ? args[1] : "count";
+        if (mode.startsWith("board:")) {
+            Topology topology = Topology.load(mode.substring("board:".length()));
+            long start = System.nanoTime();
+            long nodes = new Perft().count(topology, depth);
+            long elapsed = System.nanoTime() - start;
+            System.out.printf("perft %d on %s: %d in %d ms, %.0f per second%n",
+                    depth, topology, nodes, elapsed / 1000000, nodes * 1e9 / Math.max(elapsed, 1));
+            return;
+        }
+        Game game;
+        if (args.length > 2) {
+            game = SaveFormat.load(Paths.get(args[2]));
+        } else {
+            game = new Game();
+            game.newGame(Player.RED);
+        }
+        Frame frame = new Frame(game.getFrame());
+        Player side = game.getTurn();
+
+        long start = System.nanoTime();
+        long nodes;
+        switch (mode) {
+            case "divide":
+                int[] roots = new int[MoveGenerator.MAX_MOVES];
+                long[] result = new Perft().divide(frame, side, depth, roots);
+                nodes = 0;
+                for (int i = 0; i < result.length; i++) {
+                    System.out.println(Move.toString(roots[i], side) + ": " + result[i]);
+                    nodes += result[i];
+                }
+                System.out.println("moves " + result.length);
+                break;
+            case "parallel":
+                nodes = parallel(frame, side, depth, 0);
+                break;
+            case "hashed":
+                nodes = parallel(frame, side, depth, 20);
+                break;
+            case "check":
+                nodes = new Perft().check(game, depth);
+                System.out.println("handleMove agrees with the generator");
+                break;
+            default:
+                nodes = new Perft().count(frame, side, depth);
+        }
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("perft %d: %d in %d ms, %.0f per second%n",
+                depth, nodes, elapsed / 1000000, nodes * 1e9 / Math.max(elapsed, 1));
+    }
+}
@@ -8,18 +8,41 @@ public enum Piece {
     B0, B1, B2, B3, B4, B5,
     R0, R1, R2, R3, R4, R5;
 
+    // tables indexed by ordinal
+    private static final Piece[] PIECES = values();
+    private static final Player[] OWNER = new Player[PIECES.length];
+
+    static {
+        for (Piece p: PIECES) {
+            OWNER[p.ordinal()] = p.toString().startsWith("R") ? Player.RED
+                    : p.toString().startsWith("B") ? Player.BLUE : Player.NONE;
+        }
+    }
+
+    /**
+     * get owner of the piece
+     * @return owning player, NONE for no piece
+     */
+    public Player owner() {
+        return OWNER[ordinal()];
+    }
+
+    /**
+     * get a player's piece by number
+     * @param player which player
+     * @param n piece number
+     */
+    public static Piece get(Player player, int n) {
+        return PIECES[(player == Player.RED ? R0 : B0).ordinal() + n];
+    }
+
     /**
      * is piece players piece
      * @param player which player
      * @param piece which piece
      */
     public static boolean isPlayers(Player player, Piece piece) {
-        if (player == Player.RED) {
-            if (piece.toString().contains("R")) return true;
-        } else {
-            if (piece.toString().contains("B")) return true;
-        }
-        return false;
+        return piece != NONE && OWNER[piece.ordinal()] == player;
     }
 
     /**
@@ -29,10 +52,7 @@ public enum Piece {
      * @param p3 third piece
      */
     public static boolean isSamePlayer(Piece p1, Piece p2, Piece p3) {
-        if (p1.toString().contains("R") && p2.toString().contains("R") &&
-                p3.toString().contains("R")) return true;
-        else if (p1.toString().contains("B") && p2.toString().contains("B") &&
-                p3.toString().contains("B")) return true;
-        else return false;
+        Player owner = OWNER[p1.ordinal()];
+        return owner != Player.NONE && owner == OWNER[p2.ordinal()] && owner == OWNER[p3.ordinal()];
     }
 }
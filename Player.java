@@ -6,6 +6,16 @@ package se2aa4.morris.enums;
 public enum Player {
 	NONE, BOTH, RED, BLUE;
 
+    /**
+     * get the other player
+     * @return opponent, or the same value for NONE and BOTH
+     */
+    public Player opponent() {
+        if (this == RED) return BLUE;
+        else if (this == BLUE) return RED;
+        else return this;
+    }
+
     @Override
     public String toString() {
         return super.toString();
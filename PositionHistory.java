@@ -0,0 +1,95 @@
+package se2aa4.morris;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Positions of a game, for detecting repetitions and quiet stretches
+ *
+ * Keeps a stack of position hashes, one per turn, with an open addressing
+ * table counting each hash, so pushing and popping a position both cost O(1).
+ */
+class PositionHistory implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    // position of each turn and turns since the last capture at that point
+    private long[] hashes = new long[64];
+    private int[] quiet = new int[64];
+    private int size;
+
+    // occurrences of each hash, a key stays in place when its count drops to zero
+    private long[] keys = new long[64];
+    private int[] counts = new int[64];
+    private int used;
+
+    /**
+     * add the position after a turn
+     * @param hash position hash including side to move
+     * @param capture did the turn capture a piece
+     * @return number of times the position has now occurred
+     */
+    int push(long hash, boolean capture) {
+        if (size == hashes.length) {
+            hashes = Arrays.copyOf(hashes, size * 2);
+            quiet = Arrays.copyOf(quiet, size * 2);
+        }
+        quiet[size] = capture || size == 0 ? 0 : quiet[size - 1] + 1;
+        hashes[size++] = hash;
+
+        if (2 * (used + 1) > keys.length) rehash();
+        int slot = find(keys, counts, hash);
+        if (counts[slot] == 0 && keys[slot] != hash) {
+            keys[slot] = hash;
+            used++;
+        }
+        return ++counts[slot];
+    }
+
+    /**
+     * remove the last position added
+     */
+    void pop() {
+        long hash = hashes[--size];
+        counts[find(keys, counts, hash)]--;
+    }
+
+    /**
+     * get number of turns since the last capture
+     */
+    int getQuiet() {
+        return size == 0 ? 0 : quiet[size - 1];
+    }
+
+    /**
+     * get slot holding a hash, or the empty slot where it goes
+     */
+    private static int find(long[] keys, int[] counts, long hash) {
+        int mask = keys.length - 1;
+        int slot = (int) (hash ^ hash >>> 32) & mask;
+        while (keys[slot] != hash && (keys[slot] != 0 || counts[slot] != 0)) slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    /**
+     * grow the table, dropping hashes no longer in the history
+     */
+    private void rehash() {
+        long[] oldKeys = keys;
+        int[] oldCounts = counts;
+        int live = 0;
+        for (int c: oldCounts) {
+            if (c > 0) live++;
+        }
+        int capacity = Integer.highestOneBit(Math.max(64, 4 * (live + 1)) - 1) << 1;
+        keys = new long[capacity];
+        counts = new int[capacity];
+        used = live;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldCounts[i] == 0) continue;
+            int slot = find(keys, counts, oldKeys[i]);
+            keys[slot] = oldKeys[i];
+            counts[slot] = oldCounts[i];
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package se2aa4.morris;
+
+import se2aa4.morris.enums.Player;
+
+/**
+ * Perfect index of six men's morris positions
+ *
+ * Positions are grouped into segments by side to move, inventory counts
+ * and board piece counts; within a segment the red and blue node sets
+ * are ranked as combinations.
+ */
+final class PositionIndex {
+
+    static final int NODES = 16;
+
+    // binomial coefficients
+    private static final int[][] CHOOSE = new int[NODES + 1][NODES + 1];
+
+    static {
+        for (int n = 0; n <= NODES; n++) {
+            CHOOSE[n][0] = 1;
+            for (int k = 1; k <= n; k++) CHOOSE[n][k] = CHOOSE[n - 1][k - 1] + CHOOSE[n - 1][k];
+        }
+    }
+
+    private final int pieces;
+    // first index of each segment, by side, inventories and board counts
+    private final long[] base;
+    private final long size;
+
+    /**
+     * PositionIndex constructor
+     * @param pieces pieces per player
+     */
+    PositionIndex(int pieces) {
+        this.pieces = pieces;
+        int p = pieces + 1;
+        base = new long[2 * p * p * p * p + 1];
+        long next = 0;
+        for (int i = 0; i < base.length - 1; i++) {
+            base[i] = next;
+            int b = i % p, r = i / p % p, bi = i / (p * p) % p, ri = i / (p * p * p) % p;
+            if (r + ri <= pieces && b + bi <= pieces) {
+                next += (long) CHOOSE[NODES][r] * CHOOSE[NODES - r][b];
+            }
+        }
+        base[base.length - 1] = next;
+        size = next;
+    }
+
+    /**
+     * get pieces per player
+     */
+    int pieces() {
+        return pieces;
+    }
+
+    /**
+     * get number of indexed positions
+     */
+    long size() {
+        return size;
+    }
+
+    /**
+     * get index of a position
+     * @param red red node mask
+     * @param blue blue node mask
+     * @param redInventory red pieces in inventory
+     * @param blueInventory blue pieces in inventory
+     * @param side player to move
+     * @return position index
+     */
+    long index(int red, int blue, int redInventory, int blueInventory, Player side) {
+        int r = Integer.bitCount(red), b = Integer.bitCount(blue);
+        long offset = (long) rank(red) * CHOOSE[NODES - r][b] + rank(compress(blue, red));
+        return base[segment(side == Player.RED ? 0 : 1, redInventory, blueInventory, r, b)] + offset;
+    }
+
+    /**
+     * decode a position index
+     * @param index position index
+     * @param out filled with red mask, blue mask, red inventory, blue inventory and side (0 red, 1 blue)
+     */
+    void decode(long index, int[] out) {
+        // find segment
+        int lo = 0, hi = base.length - 2;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (base[mid] <= index) lo = mid;
+            else hi = mid - 1;
+        }
+
+        int p = pieces + 1;
+        int b = lo % p, r = lo / p % p, bi = lo / (p * p) % p, ri = lo / (p * p * p) % p, side = lo / (p * p * p * p);
+        long offset = index - base[lo];
+        int blueCount = CHOOSE[NODES - r][b];
+        int red = unrank((int) (offset / blueCount), r);
+        out[0] = red;
+        out[1] = expand(unrank((int) (offset % blueCount), b), red);
+        out[2] = ri;
+        out[3] = bi;
+        out[4] = side;
+    }
+
+    /**
+     * get segment number
+     */
+    private int segment(int side, int ri, int bi, int r, int b) {
+        int p = pieces + 1;
+        return (((side * p + ri) * p + bi) * p + r) * p + b;
+    }
+
+    /**
+     * rank a node set among sets of the same size
+     * @param mask node set
+     * @return colexicographic rank
+     */
+    static int rank(int mask) {
+        int rank = 0, k = 0;
+        for (int m = mask; m != 0; m &= m - 1) {
+            rank += CHOOSE[Integer.numberOfTrailingZeros(m)][++k];
+        }
+        return rank;
+    }
+
+    /**
+     * get node set of a given rank
+     * @param rank colexicographic rank
+     * @param k set size
+     * @return node set
+     */
+    static int unrank(int rank, int k) {
+        int mask = 0;
+        for (int c = NODES - 1; k > 0; c--) {
+            if (CHOOSE[c][k] <= rank) {
+                rank -= CHOOSE[c][k];
+                mask |= 1 << c;
+                k--;
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * pack a node set into the nodes not covered by holes
+     */
+    static int compress(int mask, int holes) {
+        int packed = 0, j = 0;
+        for (int i = 0; i < NODES; i++) {
+            if ((holes & (1 << i)) != 0) continue;
+            if ((mask & (1 << i)) != 0) packed |= 1 << j;
+            j++;
+        }
+        return packed;
+    }
+
+    /**
+     * unpack a node set into the nodes not covered by holes
+     */
+    static int expand(int packed, int holes) {
+        int mask = 0, j = 0;
+        for (int i = 0; i < NODES; i++) {
+            if ((holes & (1 << i)) != 0) continue;
+            if ((packed & (1 << j)) != 0) mask |= 1 << i;
+            j++;
+        }
+        return mask;
+    }
+}
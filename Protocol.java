@@ -0,0 +1,60 @@
+package se2aa4.morris;
+
+/**
+ * Binary messages between GameServer and its clients
+ *
+ * Every message is a type byte followed by a fixed size big-endian payload.
+ * Requests: NEW first player; MOVE session, move as a short; STATE session;
+ * CLOSE session. Replies: CREATED session, player to move; RESULT session,
+ * Detail, State and player to move ordinals; POSITION session and the
+ * SaveFormat position; CLOSED session; ERROR session, error code.
+ * A session is the 8 byte token from CREATED; tokens of sessions created
+ * by other clients can't be guessed from one's own.
+ */
+final class Protocol {
+
+    // requests
+    static final byte NEW = 1, MOVE = 2, STATE = 3, CLOSE = 4;
+
+    // replies
+    static final byte CREATED = -127, RESULT = -126, POSITION = -125, CLOSED = -124, ERROR = -1;
+
+    // first player in NEW
+    static final byte FIRST_RED = 0, FIRST_BLUE = 1, FIRST_RANDOM = 2;
+
+    // error codes
+    static final byte UNKNOWN_SESSION = 1, BAD_MESSAGE = 2, SERVER_FULL = 3, LOG_FAILED = 4;
+
+    // longest message
+    static final int MAX_LENGTH = 1 + 8 + SaveFormat.POSITION_SIZE;
+
+    private Protocol() {
+    }
+
+    /**
+     * get length of a message including the type byte
+     * @param type message type
+     * @return length, -1 for an unknown type
+     */
+    static int length(byte type) {
+        switch (type) {
+            case NEW:
+                return 2;
+            case MOVE:
+                return 11;
+            case STATE:
+            case CLOSE:
+            case CLOSED:
+                return 9;
+            case CREATED:
+            case ERROR:
+                return 10;
+            case RESULT:
+                return 12;
+            case POSITION:
+                return 9 + SaveFormat.POSITION_SIZE;
+            default:
+                return -1;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package se2aa4.morris;
+
+import se2aa4.morris.enums.Player;
+
+import java.util.SplittableRandom;
+
+/**
+ * Opponent playing uniformly random legal moves
+ */
+public final class RandomPlayer implements Searcher {
+
+    private final SplittableRandom random;
+    private final int[] moves = new int[MoveGenerator.MAX_MOVES];
+
+    /**
+     * RandomPlayer constructor
+     * @param seed random seed
+     */
+    public RandomPlayer(long seed) {
+        random = new SplittableRandom(seed);
+    }
+
+    /**
+     * pick a random legal move
+     * @param frame position, left unchanged
+     * @param side player to move
+     * @return random move, 0 if the player has no move
+     */
+    @Override
+    public int search(Frame frame, Player side) {
+        int n = MoveGenerator.generate(frame, side, moves);
+        return n == 0 ? 0 : moves[random.nextInt(n)];
+    }
+
+    @Override
+    public void stop() {
+    }
+
+    @Override
+    public String getInfo() {
+        return "random";
+    }
+}
@@ -0,0 +1,272 @@
+package se2aa4.morris;
+
+import se2aa4.morris.enums.Player;
+import se2aa4.morris.enums.State;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Versioned binary save files holding any number of games
+ *
+ * A file is MAGIC, version and a reserved short, followed by records of
+ * body length, body and CRC32 of the body. A body is the state, the first
+ * player, a flags byte, the no-capture limit, the position the game started
+ * from if HAS_START is set, the position after the last turn and one short per
+ * finished turn.
+ * Games are replayed from their moves on loading; a turn in progress is saved as
+ * it stood before its first move.
+ * Saves of the original release, a serialized Game, are also read.
+ */
+public final class SaveFormat {
+
+    public static final String DEFAULT_FILENAME = "save/game.sav";
+
+    // file layout
+    static final int MAGIC = 0x4d525347;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 8;
+    static final int POSITION_SIZE = 6;
+    private static final int BODY_FIXED = 7 + POSITION_SIZE;
+    private static final int HAS_START = 1;
+    private static final int MAX_TURNS = 0xffff;
+
+    // first bytes of a java serialization stream, used by older saves
+    private static final int LEGACY_MAGIC = 0xaced;
+
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private SaveFormat() {
+    }
+
+    /**
+     * save a single game
+     * @param path output file
+     * @param game game to save
+     */
+    public static void save(Path path, Game game) throws IOException {
+        write(path, Collections.singletonList(game));
+    }
+
+    /**
+     * load a single game, older serialized saves included
+     * @param path save file
+     * @return loaded game
+     * @throws IOException if the file can't be read, is corrupt or holds more than one game
+     */
+    public static Game load(Path path) throws IOException {
+        List<Game> games = read(path);
+        if (games.size() != 1) throw new IOException("expected one game, found " + games.size() + ": " + path);
+        return games.get(0);
+    }
+
+    /**
+     * write games to a file
+     * @param path output file
+     * @param games games to write
+     */
+    public static void write(Path path, Iterable<Game> games) throws IOException {
+        long begin = Metrics.start();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            buffer.putInt(MAGIC).putShort((short) VERSION).putShort((short) 0);
+            CRC32 crc = new CRC32();
+            for (Game game: games) {
+                boolean started = game.getState() != State.UNSTARTED;
+                int turns = started ? game.getTurnCount() : 0;
+                if (turns > MAX_TURNS) throw new IOException("game too long to save: " + turns + " turns");
+                Frame from = started ? game.getStart() : null;
+                int length = BODY_FIXED + (from != null ? POSITION_SIZE : 0) + 2 * turns;
+                if (buffer.remaining() < length + 8) flush(channel, buffer);
+
+                buffer.putInt(length);
+                int start = buffer.position();
+                buffer.put((byte) game.getState().ordinal());
+                buffer.put((byte) (started && game.getFirstTurn() == Player.BLUE ? 1 : 0));
+                buffer.put((byte) (from != null ? HAS_START : 0));
+                buffer.putInt(game.getNoCaptureLimit());
+                if (started) {
+                    if (from != null) putPosition(buffer, from, game.getFirstTurn());
+                    putPosition(buffer, game.getTurnStartFrame(), game.getTurn());
+                    for (int i = 0; i < turns; i++) buffer.putShort((short) game.getTurnMove(i));
+                } else {
+                    for (int i = 0; i < POSITION_SIZE; i++) buffer.put((byte) 0);
+                }
+
+                ByteBuffer body = buffer.duplicate();
+                body.position(start).limit(start + length);
+                crc.reset();
+                crc.update(body);
+                buffer.putInt((int) crc.getValue());
+            }
+            flush(channel, buffer);
+        } finally {
+            Metrics.SAVE.stop(begin);
+        }
+    }
+
+    /**
+     * read all games of a file
+     * @param path save file
+     * @return games in file order
+     */
+    public static List<Game> read(Path path) throws IOException {
+        List<Game> games = new ArrayList<>();
+        read(path, games::add);
+        return games;
+    }
+
+    /**
+     * stream the games of a file
+     * @param path save file
+     * @param sink receives each game in file order
+     * @throws IOException if the file can't be read or a record is corrupt
+     */
+    public static void read(Path path, Consumer<Game> sink) throws IOException {
+        long begin = Metrics.start();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            buffer.flip();
+            if (fill(channel, buffer, 2) && (buffer.getShort(0) & 0xffff) == LEGACY_MAGIC) {
+                sink.accept(LegacySave.read(path));
+                return;
+            }
+            if (!fill(channel, buffer, HEADER_SIZE) || buffer.getInt() != MAGIC) {
+                throw new IOException("not a save file: " + path);
+            }
+            int version = buffer.getShort() & 0xffff;
+            buffer.getShort();
+            if (version != VERSION) throw new IOException("unsupported save version " + version + ": " + path);
+
+            CRC32 crc = new CRC32();
+            int[] moves = new int[MAX_TURNS];
+            while (fill(channel, buffer, 1)) {
+                if (!fill(channel, buffer, 4)) throw new IOException("truncated save file: " + path);
+                int length = buffer.getInt();
+                if (length < BODY_FIXED || length > BODY_FIXED + POSITION_SIZE + 2 * MAX_TURNS
+                        || !fill(channel, buffer, length + 4)) {
+                    throw new IOException("truncated save file: " + path);
+                }
+                ByteBuffer body = buffer.slice();
+                body.limit(length);
+                crc.reset();
+                crc.update(body.duplicate());
+                buffer.position(buffer.position() + length);
+                if (buffer.getInt() != (int) crc.getValue()) throw new IOException("checksum mismatch: " + path);
+
+                sink.accept(readBody(body, moves));
+            }
+        } finally {
+            Metrics.LOAD.stop(begin);
+        }
+    }
+
+    /**
+     * decode a record body
+     * @param body record body
+     * @param moves scratch buffer for the moves
+     * @return rebuilt game
+     */
+    private static Game readBody(ByteBuffer body, int[] moves) throws IOException {
+        int ordinal = body.get();
+        if (ordinal < 0 || ordinal >= State.values().length) throw new IOException("bad game state " + ordinal);
+        State state = State.values()[ordinal];
+        Player first = body.get() == 0 ? Player.RED : Player.BLUE;
+        int flags = body.get();
+        int noCaptureLimit = body.getInt();
+        if (noCaptureLimit <= 0) throw new IOException("bad no-capture limit " + noCaptureLimit);
+        if (state == State.UNSTARTED) {
+            Game game = new Game();
+            game.setNoCaptureLimit(noCaptureLimit);
+            return game;
+        }
+
+        Frame start = null;
+        if ((flags & HAS_START) != 0) {
+            if (body.remaining() < 2 * POSITION_SIZE) throw new IOException("bad record length");
+            start = getPosition(body);
+        }
+        if (body.remaining() < POSITION_SIZE || (body.remaining() - POSITION_SIZE & 1) != 0) {
+            throw new IOException("bad record length");
+        }
+        int red = body.getShort() & 0xffff, blue = body.getShort() & 0xffff;
+        int inventories = body.get() & 0xff;
+        Player side = body.get() == 0 ? Player.RED : Player.BLUE;
+        int count = 0;
+        while (body.hasRemaining()) moves[count++] = body.getShort() & 0xffff;
+
+        Game game = Game.replay(start, new long[0], first, moves, count, state, noCaptureLimit);
+        Frame frame = game.getFrame();
+        if (frame.getPieces(Player.RED) != red || frame.getPieces(Player.BLUE) != blue
+                || frame.getInventory(Player.RED) != inventories >>> 4
+                || frame.getInventory(Player.BLUE) != (inventories & 0xf)
+                || game.getTurn() != side) {
+            throw new IOException("moves don't reach the saved position");
+        }
+        return game;
+    }
+
+    /**
+     * write a position in POSITION_SIZE bytes
+     * @param buffer output
+     * @param frame board and inventories
+     * @param side player to move
+     */
+    static void putPosition(ByteBuffer buffer, Frame frame, Player side) {
+        buffer.putShort((short) frame.getPieces(Player.RED));
+        buffer.putShort((short) frame.getPieces(Player.BLUE));
+        buffer.put((byte) (frame.getInventory(Player.RED) << 4 | frame.getInventory(Player.BLUE)));
+        buffer.put((byte) (side == Player.RED ? 0 : 1));
+    }
+
+    /**
+     * read a position written by putPosition, without the player to move
+     * @param buffer input
+     * @return position
+     * @throws IOException if the position is impossible
+     */
+    static Frame getPosition(ByteBuffer buffer) throws IOException {
+        int red = buffer.getShort() & 0xffff, blue = buffer.getShort() & 0xffff;
+        int inventories = buffer.get() & 0xff;
+        buffer.get();
+        try {
+            return Frame.position(red, blue, inventories >>> 4, inventories & 0xf);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("bad position", e);
+        }
+    }
+
+    /**
+     * write out buffered bytes
+     * @param buffer buffer in write mode, cleared afterwards
+     */
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) channel.write(buffer);
+        buffer.clear();
+    }
+
+    /**
+     * make at least n bytes available to read
+     * @param buffer buffer in read mode
+     * @return false if the file ends first
+     */
+    private static boolean fill(FileChannel channel, ByteBuffer buffer, int n) throws IOException {
+        if (buffer.remaining() >= n) return true;
+        buffer.compact();
+        while (buffer.position() < n) {
+            if (channel.read(buffer) < 0) break;
+        }
+        buffer.flip();
+        return buffer.remaining() >= n;
+    }
+}
@@ -0,0 +1,27 @@
+package se2aa4.morris;
+
+import se2aa4.morris.enums.Player;
+
+/**
+ * Common interface of move search engines
+ */
+public interface Searcher {
+
+    /**
+     * find the best move for a player
+     * @param frame position to search, left unchanged
+     * @param side player to move
+     * @return best move, 0 if the player has no move
+     */
+    int search(Frame frame, Player side);
+
+    /**
+     * stop a running search from another thread
+     */
+    void stop();
+
+    /**
+     * get summary of the last search
+     */
+    String getInfo();
+}
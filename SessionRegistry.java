@@ -0,0 +1,209 @@
+package se2aa4.morris;
+
+import java.util.Arrays;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Games by session token, with O(1) create, lookup and release
+ *
+ * A session id is a slot index with the slot's generation above it, so an
+ * id stays invalid after its slot is reused. Clients get a token, the id
+ * with a tag of it above, so guessing an id doesn't reach the session
+ * unless the tag is guessed too. The sessions of each owner
+ * are linked through their slots, so dropping a connection only visits its
+ * own sessions. Not thread safe; each server worker owns one registry.
+ */
+final class SessionRegistry {
+
+    private static final int SLOT_BITS = 20;
+    static final int SLOT_MASK = (1 << SLOT_BITS) - 1;
+    static final int MAX_SESSIONS = 1 << SLOT_BITS;
+
+    /**
+     * holder of sessions that are removed together
+     */
+    static class Owner {
+        // first slot of the owner's sessions, -1 if none
+        private int first = -1;
+    }
+
+    // tag of each session id
+    private final IntUnaryOperator tagger;
+
+    private Game[] games;
+    private Owner[] owners;
+    private int[] tags;
+    // neighbouring slots of the same owner, -1 at either end
+    private int[] next, prev;
+    private int[] generations;
+    // free slots, used as a stack
+    private int[] free;
+    private int freeCount, used, size;
+
+    /**
+     * SessionRegistry constructor
+     * @param capacity initial number of slots
+     * @param tagger gets the tag of a session id, the same for the same id
+     */
+    SessionRegistry(int capacity, IntUnaryOperator tagger) {
+        this.tagger = tagger;
+        games = new Game[capacity];
+        owners = new Owner[capacity];
+        tags = new int[capacity];
+        next = new int[capacity];
+        prev = new int[capacity];
+        generations = new int[capacity];
+        free = new int[capacity];
+    }
+
+    /**
+     * add a game
+     * @param game game to register
+     * @param owner connection the session belongs to, or null
+     * @return session token, -1 if the registry is full
+     */
+    long add(Game game, Owner owner) {
+        int slot;
+        if (freeCount > 0) {
+            slot = free[--freeCount];
+        } else {
+            if (used == MAX_SESSIONS) return -1;
+            if (used == games.length) {
+                int capacity = Math.min(games.length * 2, MAX_SESSIONS);
+                games = Arrays.copyOf(games, capacity);
+                owners = Arrays.copyOf(owners, capacity);
+                tags = Arrays.copyOf(tags, capacity);
+                next = Arrays.copyOf(next, capacity);
+                prev = Arrays.copyOf(prev, capacity);
+                generations = Arrays.copyOf(generations, capacity);
+                free = Arrays.copyOf(free, capacity);
+            }
+            slot = used++;
+        }
+        games[slot] = game;
+        link(slot, owner);
+        size++;
+        int id = generations[slot] << SLOT_BITS | slot;
+        tags[slot] = tagger.applyAsInt(id);
+        return token(id, tags[slot]);
+    }
+
+    /**
+     * put back a game under the id it had before a restart
+     *
+     * Restores must come before any add, in increasing slot order.
+     * @param id session id
+     * @param game game to register
+     * @param owner connection the session belongs to, or null
+     * @return false if the id can't be restored
+     */
+    boolean restore(int id, Game game, Owner owner) {
+        int slot = id & SLOT_MASK;
+        if (id < 0 || slot < used) return false;
+        while (games.length <= slot) {
+            games = Arrays.copyOf(games, games.length * 2);
+            owners = Arrays.copyOf(owners, games.length);
+            tags = Arrays.copyOf(tags, games.length);
+            next = Arrays.copyOf(next, games.length);
+            prev = Arrays.copyOf(prev, games.length);
+            generations = Arrays.copyOf(generations, games.length);
+            free = Arrays.copyOf(free, games.length);
+        }
+        while (used < slot) free[freeCount++] = used++;
+        used++;
+        games[slot] = game;
+        link(slot, owner);
+        generations[slot] = id >>> SLOT_BITS;
+        tags[slot] = tagger.applyAsInt(id);
+        size++;
+        return true;
+    }
+
+    /**
+     * get a game
+     * @param token session token
+     * @return game, null if the session doesn't exist
+     */
+    Game get(long token) {
+        int id = id(token), slot = id & SLOT_MASK;
+        if (id < 0 || slot >= used || generations[slot] != id >>> SLOT_BITS
+                || tags[slot] != (int) (token >>> 32)) {
+            return null;
+        }
+        return games[slot];
+    }
+
+    /**
+     * remove a game
+     * @param token session token
+     * @return false if the session doesn't exist
+     */
+    boolean remove(long token) {
+        if (get(token) == null) return false;
+        int slot = id(token) & SLOT_MASK;
+        games[slot] = null;
+        unlink(slot);
+        generations[slot] = (generations[slot] + 1) & (Integer.MAX_VALUE >>> SLOT_BITS);
+        free[freeCount++] = slot;
+        size--;
+        return true;
+    }
+
+    /**
+     * remove every game of an owner
+     * @param owner connection the sessions belong to, not null
+     * @return number of sessions removed
+     */
+    int removeAll(Owner owner) {
+        int removed = 0;
+        while (owner.first >= 0) {
+            int slot = owner.first;
+            remove(token(generations[slot] << SLOT_BITS | slot, tags[slot]));
+            removed++;
+        }
+        return removed;
+    }
+
+    /**
+     * put a slot at the front of its owner's sessions
+     */
+    private void link(int slot, Owner owner) {
+        owners[slot] = owner;
+        prev[slot] = -1;
+        next[slot] = -1;
+        if (owner == null) return;
+        next[slot] = owner.first;
+        if (owner.first >= 0) prev[owner.first] = slot;
+        owner.first = slot;
+    }
+
+    /**
+     * take a slot out of its owner's sessions
+     */
+    private void unlink(int slot) {
+        Owner owner = owners[slot];
+        owners[slot] = null;
+        if (owner == null) return;
+        if (prev[slot] >= 0) next[prev[slot]] = next[slot];
+        else owner.first = next[slot];
+        if (next[slot] >= 0) prev[next[slot]] = prev[slot];
+    }
+
+    /**
+     * get session id of a token
+     */
+    static int id(long token) {
+        return (int) token;
+    }
+
+    private static long token(int id, int tag) {
+        return (long) tag << 32 | id & 0xffffffffL;
+    }
+
+    /**
+     * get number of live sessions
+     */
+    int size() {
+        return size;
+    }
+}
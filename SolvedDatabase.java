@@ -0,0 +1,159 @@
+package se2aa4.morris;
+
+import se2aa4.morris.enums.Player;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Memory-mapped perfect play database written by Solver
+ */
+public final class SolvedDatabase {
+
+    public static final String DEFAULT_FILENAME = "save/six.db";
+
+    // results
+    public static final int UNKNOWN = 0, WIN = 1, LOSS = 2, DRAW = 3;
+    static final int MAX_DISTANCE = (1 << 14) - 1;
+
+    // file layout
+    static final int MAGIC = 0x4d525344;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 20;
+
+    private final PositionIndex index;
+    private final MappedByteBuffer data;
+    private final int[] moves = new int[MoveGenerator.MAX_MOVES];
+
+    /**
+     * SolvedDatabase constructor
+     * @param index position index of the file
+     * @param data mapped file contents
+     */
+    private SolvedDatabase(PositionIndex index, MappedByteBuffer data) {
+        this.index = index;
+        this.data = data;
+    }
+
+    /**
+     * map a database file
+     * @param path database file
+     * @return opened database
+     * @throws IOException if the file can't be read or has a wrong header
+     */
+    public static SolvedDatabase open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (channel.size() < HEADER_SIZE || data.getInt(0) != MAGIC || data.getInt(4) != VERSION) {
+                throw new IOException("not a solved database: " + path);
+            }
+            PositionIndex index = new PositionIndex(data.getInt(8));
+            if (data.getLong(12) != index.size() || channel.size() != HEADER_SIZE + 2 * index.size()) {
+                throw new IOException("truncated solved database: " + path);
+            }
+            return new SolvedDatabase(index, data);
+        }
+    }
+
+    /**
+     * get perfect play value of a position
+     * @param frame position
+     * @param side player to move
+     * @return encoded result and distance, see result and distance, UNKNOWN off the six men's board
+     */
+    public int probe(Frame frame, Player side) {
+        if (frame.getTopology() != Topology.SIX) return UNKNOWN;
+        Player other = side.opponent();
+        return probe(frame.getPieces(side), frame.getPieces(other),
+                frame.getInventory(side), frame.getInventory(other), side);
+    }
+
+    /**
+     * get perfect play value from raw board data
+     */
+    private int probe(int own, int opp, int ownInventory, int oppInventory, Player side) {
+        if (Integer.bitCount(own) + ownInventory > index.pieces()
+                || Integer.bitCount(opp) + oppInventory > index.pieces()) return UNKNOWN;
+        long i = side == Player.RED
+                ? index.index(own, opp, ownInventory, oppInventory, side)
+                : index.index(opp, own, oppInventory, ownInventory, side);
+        return data.getShort((int) (HEADER_SIZE + 2 * i)) & 0xffff;
+    }
+
+    /**
+     * get a perfect play move
+     * @param frame position
+     * @param side player to move
+     * @return fastest winning, drawing or slowest losing move, 0 if none or off the six men's board
+     */
+    public synchronized int bestMove(Frame frame, Player side) {
+        if (frame.getTopology() != Topology.SIX) return 0;
+        Player other = side.opponent();
+        int own = frame.getPieces(side), opp = frame.getPieces(other);
+        int ownInventory = frame.getInventory(side), oppInventory = frame.getInventory(other);
+        int n = MoveGenerator.generate(own, opp, ownInventory, oppInventory, moves);
+
+        int best = 0, bestRank = Integer.MIN_VALUE;
+        for (int j = 0; j < n; j++) {
+            int m = moves[j];
+            int o = own | Topology.bit(Move.to(m)), oi = ownInventory;
+            int x = opp, xi = oppInventory;
+            if (Move.from(m) == Move.INVENTORY) oi--;
+            else o &= ~Topology.bit(Move.from(m));
+            if (Move.capture(m) == Move.INVENTORY) xi--;
+            else if (Move.capture(m) != Move.NONE) x &= ~Topology.bit(Move.capture(m));
+
+            // rank from the mover's view, the child is scored for the opponent
+            int value = probe(x, o, xi, oi, other);
+            int rank;
+            switch (result(value)) {
+                case LOSS:
+                    rank = 2 * MAX_DISTANCE - distance(value);
+                    break;
+                case DRAW:
+                    rank = MAX_DISTANCE;
+                    break;
+                case WIN:
+                    rank = distance(value);
+                    break;
+                default:
+                    rank = -1;
+            }
+            if (rank > bestRank) {
+                bestRank = rank;
+                best = m;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * encode a value
+     * @param result WIN, LOSS or DRAW
+     * @param distance moves to the end of the game
+     */
+    static short encode(int result, int distance) {
+        return (short) (result << 14 | Math.min(distance, MAX_DISTANCE));
+    }
+
+    /**
+     * get result of a value
+     * @param value encoded value
+     * @return WIN, LOSS, DRAW or UNKNOWN for the player to move
+     */
+    public static int result(int value) {
+        return (value & 0xffff) >>> 14;
+    }
+
+    /**
+     * get distance of a value
+     * @param value encoded value
+     * @return moves to the end of the game with perfect play
+     */
+    public static int distance(int value) {
+        return value & MAX_DISTANCE;
+    }
+}
@@ -0,0 +1,328 @@
+package se2aa4.morris;
+
+import se2aa4.morris.enums.Player;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Offline strong solver using retrograde analysis
+ *
+ * Run with enough heap for the value and counter tables, about 1 GB for
+ * six pieces per side.
+ */
+public final class Solver {
+
+    private static final Topology TOPOLOGY = Topology.SIX;
+    private static final int ALL_NODES = (1 << PositionIndex.NODES) - 1;
+
+    private final PositionIndex index;
+    private final int size;
+
+    // result and distance of each position
+    private final short[] values;
+    // unresolved moves left in each position
+    private final byte[] counts;
+    private final long[] reachable;
+
+    // scratch buffers
+    private final int[] moves = new int[MoveGenerator.MAX_MOVES];
+    private final long[] links = new long[1024];
+    private final int[] state = new int[5];
+
+    /**
+     * Solver constructor
+     * @param pieces pieces per player
+     */
+    Solver(int pieces) {
+        index = new PositionIndex(pieces);
+        if (index.size() > Integer.MAX_VALUE) throw new IllegalArgumentException("too many positions");
+        size = (int) index.size();
+        values = new short[size];
+        counts = new byte[size];
+        reachable = new long[(size + 63) >>> 6];
+    }
+
+    /**
+     * mark every position reachable from the empty board
+     * @return number of reachable positions
+     */
+    long enumerate() {
+        long[] frontier = new long[reachable.length], next = new long[reachable.length];
+        for (Player side: new Player[] {Player.RED, Player.BLUE}) {
+            long start = index.index(0, 0, index.pieces(), index.pieces(), side);
+            set(reachable, start);
+            set(frontier, start);
+        }
+        long found = 2;
+        while (!isEmpty(frontier)) {
+            for (long i = nextSet(frontier, 0); i >= 0; i = nextSet(frontier, i + 1)) {
+                index.decode(i, state);
+                int n = children(state, links);
+                for (int j = 0; j < n; j++) {
+                    if (!get(reachable, links[j])) {
+                        set(reachable, links[j]);
+                        set(next, links[j]);
+                        found++;
+                    }
+                }
+            }
+            long[] swap = frontier;
+            frontier = next;
+            next = swap;
+            Arrays.fill(next, 0);
+        }
+        return found;
+    }
+
+    /**
+     * propagate results back from terminal positions
+     */
+    void solve() {
+        long[] current = new long[reachable.length], next = new long[reachable.length];
+
+        // terminal positions are lost for the player to move
+        for (long i = nextSet(reachable, 0); i >= 0; i = nextSet(reachable, i + 1)) {
+            index.decode(i, state);
+            int n = children(state, links);
+            if (n == 0) {
+                values[(int) i] = SolvedDatabase.encode(SolvedDatabase.LOSS, 0);
+                set(current, i);
+            } else {
+                counts[(int) i] = (byte) n;
+            }
+        }
+
+        for (int distance = 1; !isEmpty(current); distance++) {
+            int d = Math.min(distance, SolvedDatabase.MAX_DISTANCE);
+            for (long i = nextSet(current, 0); i >= 0; i = nextSet(current, i + 1)) {
+                boolean lost = SolvedDatabase.result(values[(int) i]) == SolvedDatabase.LOSS;
+                index.decode(i, state);
+                int n = parents(state, links);
+                for (int j = 0; j < n; j++) {
+                    int p = (int) links[j];
+                    if (!get(reachable, p) || values[p] != 0) continue;
+                    if (lost) {
+                        // a move into a lost position wins
+                        values[p] = SolvedDatabase.encode(SolvedDatabase.WIN, d);
+                        set(next, p);
+                    } else if (--counts[p] == 0) {
+                        // every move leads to a won position for the opponent
+                        values[p] = SolvedDatabase.encode(SolvedDatabase.LOSS, d);
+                        set(next, p);
+                    }
+                }
+            }
+            long[] swap = current;
+            current = next;
+            next = swap;
+            Arrays.fill(next, 0);
+        }
+
+        // anything unresolved can be held forever
+        for (long i = nextSet(reachable, 0); i >= 0; i = nextSet(reachable, i + 1)) {
+            if (values[(int) i] == 0) values[(int) i] = SolvedDatabase.encode(SolvedDatabase.DRAW, 0);
+        }
+    }
+
+    /**
+     * get successors of a position
+     * @param s decoded position
+     * @param out filled with successor indices
+     * @return number of successors, 0 for terminal positions
+     */
+    private int children(int[] s, long[] out) {
+        boolean redToMove = s[4] == 0;
+        int own = redToMove ? s[0] : s[1], opp = redToMove ? s[1] : s[0];
+        int ownInventory = redToMove ? s[2] : s[3], oppInventory = redToMove ? s[3] : s[2];
+        if (Integer.bitCount(own) + ownInventory < 3) return 0;
+
+        int n = MoveGenerator.generate(own, opp, ownInventory, oppInventory, moves);
+        for (int j = 0; j < n; j++) {
+            int m = moves[j];
+            int o = own | Topology.bit(Move.to(m)), oi = ownInventory;
+            int x = opp, xi = oppInventory;
+            if (Move.from(m) == Move.INVENTORY) oi--;
+            else o &= ~Topology.bit(Move.from(m));
+            if (Move.capture(m) == Move.INVENTORY) xi--;
+            else if (Move.capture(m) != Move.NONE) x &= ~Topology.bit(Move.capture(m));
+            out[j] = redToMove ? index.index(o, x, oi, xi, Player.BLUE) : index.index(x, o, xi, oi, Player.RED);
+        }
+        return n;
+    }
+
+    /**
+     * get predecessors of a position, one per move leading to it
+     * @param s decoded position
+     * @param out filled with predecessor indices
+     * @return number of predecessors
+     */
+    private int parents(int[] s, long[] out) {
+        // the opponent of the player to move made the last move
+        boolean redMoved = s[4] == 1;
+        int mover = redMoved ? s[0] : s[1], other = redMoved ? s[1] : s[0];
+        int moverInventory = redMoved ? s[2] : s[3], otherInventory = redMoved ? s[3] : s[2];
+        int pieces = index.pieces();
+        if (Integer.bitCount(mover) + moverInventory < 3) return 0;
+
+        int empty = ~(mover | other) & ALL_NODES;
+        int n = 0;
+        for (int t = mover; t != 0; t &= t - 1) {
+            int to = Integer.numberOfTrailingZeros(t);
+            boolean mill = MoveGenerator.formsMill(mover, to);
+
+            // placement, or a slide from each empty neighbour once the inventory is empty
+            int origins = moverInventory == 0 ? TOPOLOGY.adjacent(to) & empty : 0;
+            for (int k = -1; k < Integer.bitCount(origins); k++) {
+                int from = -1;
+                int before = mover & ~Topology.bit(to), beforeInventory = moverInventory;
+                if (k < 0) {
+                    beforeInventory++;
+                    if (beforeInventory > pieces) continue;
+                } else {
+                    from = nthBit(origins, k);
+                    before |= Topology.bit(from);
+                }
+
+                if (!mill) {
+                    n = link(out, n, redMoved, before, other, beforeInventory, otherInventory);
+                    continue;
+                }
+
+                // a mill captured a piece that is now an empty node
+                int captured = empty & ~(from < 0 ? 0 : Topology.bit(from));
+                if (Integer.bitCount(other) + 1 + otherInventory <= pieces) {
+                    for (int c = captured; c != 0; c &= c - 1) {
+                        n = link(out, n, redMoved, before, other | Integer.lowestOneBit(c),
+                                beforeInventory, otherInventory);
+                    }
+                }
+                if (other == 0) {
+                    // with nothing on the board the capture came from the inventory
+                    if (otherInventory + 1 <= pieces) {
+                        n = link(out, n, redMoved, before, 0, beforeInventory, otherInventory + 1);
+                    }
+                    if (otherInventory == 0) {
+                        n = link(out, n, redMoved, before, 0, beforeInventory, 0);
+                    }
+                }
+            }
+        }
+        return n;
+    }
+
+    /**
+     * add a predecessor with the mover to move
+     */
+    private int link(long[] out, int n, boolean redMoved, int mover, int other,
+                     int moverInventory, int otherInventory) {
+        out[n++] = redMoved
+                ? index.index(mover, other, moverInventory, otherInventory, Player.RED)
+                : index.index(other, mover, otherInventory, moverInventory, Player.BLUE);
+        return n;
+    }
+
+    /**
+     * get the k-th lowest set bit
+     */
+    private static int nthBit(int mask, int k) {
+        for (int i = 0; i < k; i++) mask &= mask - 1;
+        return Integer.numberOfTrailingZeros(mask);
+    }
+
+    /**
+     * write the database file
+     * @param path output file
+     */
+    void write(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(SolvedDatabase.HEADER_SIZE);
+            header.putInt(SolvedDatabase.MAGIC).putInt(SolvedDatabase.VERSION)
+                    .putInt(index.pieces()).putLong(index.size());
+            header.flip();
+            while (header.hasRemaining()) channel.write(header);
+
+            ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+            for (int i = 0; i < size; i++) {
+                if (!buffer.hasRemaining()) {
+                    buffer.flip();
+                    while (buffer.hasRemaining()) channel.write(buffer);
+                    buffer.clear();
+                }
+                buffer.putShort(values[i]);
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) channel.write(buffer);
+        }
+    }
+
+    /**
+     * get value of a position
+     */
+    short value(long i) {
+        return values[(int) i];
+    }
+
+    /**
+     * get position index used by the solver
+     */
+    PositionIndex index() {
+        return index;
+    }
+
+    private static void set(long[] bits, long i) {
+        bits[(int) (i >>> 6)] |= 1L << i;
+    }
+
+    private static boolean get(long[] bits, long i) {
+        return (bits[(int) (i >>> 6)] & (1L << i)) != 0;
+    }
+
+    private static boolean isEmpty(long[] bits) {
+        for (long w: bits) if (w != 0) return false;
+        return true;
+    }
+
+    /**
+     * get next set bit at or after i
+     * @return bit index, -1 if none
+     */
+    private static long nextSet(long[] bits, long i) {
+        int w = (int) (i >>> 6);
+        if (w >= bits.length) return -1;
+        long word = bits[w] & (-1L << i);
+        while (word == 0) {
+            if (++w == bits.length) return -1;
+            word = bits[w];
+        }
+        return ((long) w << 6) + Long.numberOfTrailingZeros(word);
+    }
+
+    /**
+     * solve the game and write the database
+     * @param args output file, optionally pieces per player
+     */
+    public static void main(String[] args) throws IOException {
+        Path path = Paths.get(args.length > 0 ? args[0] : SolvedDatabase.DEFAULT_FILENAME);
+        int pieces = args.length > 1 ? Integer.parseInt(args[1]) : 6;
+
+        long start = System.nanoTime();
+        Solver solver = new Solver(pieces);
+        long reached = solver.enumerate();
+        System.out.println("reachable " + reached + " of " + solver.size + " indexed positions");
+        solver.solve();
+
+        long[] results = new long[4];
+        for (int i = 0; i < solver.size; i++) results[SolvedDatabase.result(solver.values[i])]++;
+        System.out.println("win " + results[SolvedDatabase.WIN] + " loss " + results[SolvedDatabase.LOSS]
+                + " draw " + results[SolvedDatabase.DRAW]);
+        solver.write(path);
+        System.out.println("written " + path + " in " + (System.nanoTime() - start) / 1000000 + " ms");
+    }
+}
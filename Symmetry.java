@@ -0,0 +1,172 @@
+package se2aa4.morris;
+
+import se2aa4.morris.enums.Player;
+
+/**
+ * Symmetries of the six men's morris board and canonical positions
+ *
+ * The board has 16 symmetries: the 4 rotations, each optionally mirrored,
+ * combined with swapping the inner and outer squares. Transform t rotates
+ * by (t & 3) quarter turns clockwise, then mirrors left to right if bit 2 is
+ * set, then swaps the squares if bit 3 is set. Positions equal under a
+ * transform have the same value, so caches keyed by the canonical form
+ * hold up to 16 positions per entry.
+ */
+public final class Symmetry {
+
+    public static final int COUNT = 16;
+    public static final int IDENTITY = 0;
+
+    // nodes per square
+    private static final int SQUARE = 8;
+    private static final int NODES = 2 * SQUARE;
+
+    // node each node is mapped to, by transform
+    private static final int[][] NODE = new int[COUNT][Move.NONE + 1];
+    // transform undoing each transform
+    private static final int[] INVERSE = new int[COUNT];
+    // image of the low and high byte of a node mask, by transform
+    private static final int[][] LOW = new int[COUNT][256];
+    private static final int[][] HIGH = new int[COUNT][256];
+
+    static {
+        for (int t = 0; t < COUNT; t++) {
+            for (int n = 0; n < NODES; n++) {
+                int square = n / SQUARE, pos = n % SQUARE;
+                pos = (pos + 2 * (t & 3)) % SQUARE;
+                if ((t & 4) != 0) pos = (SQUARE + 2 - pos) % SQUARE;
+                if ((t & 8) != 0) square ^= 1;
+                NODE[t][n] = square * SQUARE + pos;
+            }
+            // inventory and missing nodes stay as they are
+            for (int n = NODES; n <= Move.NONE; n++) NODE[t][n] = n;
+            for (int b = 0; b < 256; b++) {
+                for (int i = 0; i < 8; i++) {
+                    if ((b & 1 << i) == 0) continue;
+                    LOW[t][b] |= Topology.bit(NODE[t][i]);
+                    HIGH[t][b] |= Topology.bit(NODE[t][i + 8]);
+                }
+            }
+        }
+        for (int t = 0; t < COUNT; t++) {
+            for (int u = 0; u < COUNT; u++) {
+                if (NODE[u][NODE[t][1]] == 1 && NODE[u][NODE[t][2]] == 2 && NODE[u][NODE[t][9]] == 9) {
+                    INVERSE[t] = u;
+                }
+            }
+        }
+    }
+
+    private Symmetry() {
+    }
+
+    /**
+     * get image of a node
+     * @param t transform
+     * @param node node index, INVENTORY or NONE
+     */
+    public static int node(int t, int node) {
+        return NODE[t][node];
+    }
+
+    /**
+     * get image of a node mask
+     * @param t transform
+     * @param mask node mask
+     */
+    public static int apply(int t, int mask) {
+        return LOW[t][mask & 0xff] | HIGH[t][mask >>> 8 & 0xff];
+    }
+
+    /**
+     * get image of a move
+     * @param t transform
+     * @param m move
+     */
+    public static int move(int t, int m) {
+        int[] map = NODE[t];
+        return Move.of(map[Move.from(m)], map[Move.to(m)], map[Move.capture(m)]);
+    }
+
+    /**
+     * get transform undoing a transform
+     * @param t transform
+     */
+    public static int inverse(int t) {
+        return INVERSE[t];
+    }
+
+    /**
+     * find the canonical form of a board
+     *
+     * The canonical form is the image with the smallest blue << 16 | red,
+     * taking the lowest transform on ties.
+     * @param red red node mask
+     * @param blue blue node mask
+     * @return canonical board in the low 32 bits, transform reaching it above
+     */
+    public static long canonical(int red, int blue) {
+        long best = board(red, blue);
+        int transform = IDENTITY;
+        for (int t = 1; t < COUNT; t++) {
+            long image = board(apply(t, red), apply(t, blue));
+            if (image < best) {
+                best = image;
+                transform = t;
+            }
+        }
+        return (long) transform << 32 | best;
+    }
+
+    /**
+     * get red nodes of a canonical form
+     */
+    public static int red(long canonical) {
+        return (int) canonical & 0xffff;
+    }
+
+    /**
+     * get blue nodes of a canonical form
+     */
+    public static int blue(long canonical) {
+        return (int) canonical >>> 16;
+    }
+
+    /**
+     * get transform of a canonical form
+     */
+    public static int transform(long canonical) {
+        return (int) (canonical >>> 32);
+    }
+
+    /**
+     * get zobrist hash of a position's canonical form
+     * @param frame position
+     * @return hash as Frame.getHash would give it after the canonical transform
+     */
+    public static long hash(Frame frame) {
+        return hash(canonical(frame.getPieces(Player.RED), frame.getPieces(Player.BLUE)),
+                frame.getInventory(Player.RED), frame.getInventory(Player.BLUE));
+    }
+
+    /**
+     * get zobrist hash of a canonical form
+     * @param canonical canonical form of the board
+     * @param redInventory red pieces in inventory
+     * @param blueInventory blue pieces in inventory
+     */
+    public static long hash(long canonical, int redInventory, int blueInventory) {
+        long hash = Zobrist.inventory(Player.RED, redInventory) ^ Zobrist.inventory(Player.BLUE, blueInventory);
+        for (int m = red(canonical); m != 0; m &= m - 1) {
+            hash ^= Zobrist.node(Player.RED, Integer.numberOfTrailingZeros(m));
+        }
+        for (int m = blue(canonical); m != 0; m &= m - 1) {
+            hash ^= Zobrist.node(Player.BLUE, Integer.numberOfTrailingZeros(m));
+        }
+        return hash;
+    }
+
+    private static long board(int red, int blue) {
+        return (long) blue << 16 | red;
+    }
+}
@@ -0,0 +1,249 @@
+package se2aa4.morris;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Precomputed board topology tables indexed by node
+ *
+ * A board is defined by a name.topology resource next to this class, read
+ * once and compiled into adjacency and mill masks. Each line of the file is
+ * a directive, # starts a comment:
+ *
+ *   pieces n        pieces each player starts with
+ *   nodes a b ...   names of the next nodes, in index order
+ *   line a b c      a mill, with each node adjacent to the next
+ *   edge a b        adjacent nodes not on a mill
+ *
+ * The game itself is played on the six men's board, whose node order
+ * matches Location; the move generator and perft take any topology.
+ */
+public final class Topology {
+
+    // six men's morris board
+    public static final Topology SIX = load("six");
+
+    // masks are ints and moves encode nodes below Move.INVENTORY
+    private static final int MAX_NODES = Move.INVENTORY;
+    private static final int MAX_MILLS = Integer.SIZE;
+    private static final int MAX_PIECES = 15;
+
+    private final String name;
+    private final String[] names;
+    private final int pieces;
+    // neighbours of each node
+    private final int[] adjacent;
+    // nodes of each mill
+    private final int[] mills;
+    // mills passing through each node
+    private final int[] nodeMills;
+
+    /**
+     * compile topology tables
+     * @param name topology name
+     * @param names name of each node
+     * @param pieces pieces per player
+     * @param edges pairs of adjacent nodes
+     * @param triplets nodes of each mill
+     */
+    private Topology(String name, String[] names, int pieces, int[][] edges, int[][] triplets) {
+        this.name = name;
+        this.names = names;
+        this.pieces = pieces;
+        adjacent = new int[names.length];
+        mills = new int[triplets.length];
+        nodeMills = new int[names.length];
+
+        for (int[] edge: edges) {
+            adjacent[edge[0]] |= bit(edge[1]);
+            adjacent[edge[1]] |= bit(edge[0]);
+        }
+        for (int i = 0; i < triplets.length; i++) {
+            for (int node: triplets[i]) {
+                mills[i] |= bit(node);
+                nodeMills[node] |= 1 << i;
+            }
+        }
+    }
+
+    /**
+     * load a topology from its resource
+     * @param name topology name, such as three, six, nine or twelve
+     * @throws IllegalArgumentException if there is no such topology or it is malformed
+     */
+    public static Topology load(String name) {
+        try (InputStream in = Topology.class.getResourceAsStream(name + ".topology")) {
+            if (in == null) throw new IllegalArgumentException("no topology " + name + " on the classpath");
+            return parse(name, new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * compile a topology definition
+     * @param name topology name
+     * @param reader definition, see the class comment
+     * @throws IllegalArgumentException if the definition is malformed
+     */
+    public static Topology parse(String name, BufferedReader reader) throws IOException {
+        Map<String, Integer> index = new HashMap<>();
+        List<String> names = new ArrayList<>();
+        List<int[]> edges = new ArrayList<>();
+        List<int[]> triplets = new ArrayList<>();
+        int pieces = 0;
+
+        String line;
+        for (int number = 1; (line = reader.readLine()) != null; number++) {
+            int comment = line.indexOf('#');
+            if (comment >= 0) line = line.substring(0, comment);
+            String[] words = line.trim().split("\\s+");
+            if (words[0].isEmpty()) continue;
+            String where = name + ".topology:" + number + ": ";
+            switch (words[0]) {
+                case "pieces":
+                    if (words.length != 2) throw new IllegalArgumentException(where + "pieces takes a count");
+                    pieces = Integer.parseInt(words[1]);
+                    break;
+                case "nodes":
+                    for (int i = 1; i < words.length; i++) {
+                        if (index.putIfAbsent(words[i], names.size()) != null) {
+                            throw new IllegalArgumentException(where + "node " + words[i] + " defined twice");
+                        }
+                        names.add(words[i]);
+                    }
+                    break;
+                case "line":
+                case "edge":
+                    int[] nodes = new int[words.length - 1];
+                    for (int i = 0; i < nodes.length; i++) {
+                        Integer node = index.get(words[i + 1]);
+                        if (node == null) throw new IllegalArgumentException(where + "unknown node " + words[i + 1]);
+                        nodes[i] = node;
+                    }
+                    if (words[0].equals("edge") ? nodes.length != 2 : nodes.length < 2) {
+                        throw new IllegalArgumentException(where + words[0] + " has " + nodes.length + " nodes");
+                    }
+                    for (int i = 1; i < nodes.length; i++) edges.add(new int[] {nodes[i - 1], nodes[i]});
+                    if (words[0].equals("line")) triplets.add(nodes);
+                    break;
+                default:
+                    throw new IllegalArgumentException(where + "unknown directive " + words[0]);
+            }
+        }
+
+        if (names.isEmpty() || names.size() > MAX_NODES) {
+            throw new IllegalArgumentException(name + ": " + names.size() + " nodes, at most " + MAX_NODES);
+        }
+        if (triplets.size() > MAX_MILLS) {
+            throw new IllegalArgumentException(name + ": " + triplets.size() + " mills, at most " + MAX_MILLS);
+        }
+        if (pieces < 1 || pieces > MAX_PIECES || 2 * pieces > names.size()) {
+            throw new IllegalArgumentException(name + ": " + pieces + " pieces don't fit");
+        }
+        return new Topology(name, names.toArray(new String[0]), pieces,
+                edges.toArray(new int[0][]), triplets.toArray(new int[0][]));
+    }
+
+    /**
+     * get bit of a node
+     * @param node node index
+     * @return mask with the node's bit set
+     */
+    public static int bit(int node) {
+        return 1 << node;
+    }
+
+    /**
+     * get topology name
+     */
+    public String name() {
+        return name;
+    }
+
+    /**
+     * get number of pieces each player starts with
+     */
+    public int pieces() {
+        return pieces;
+    }
+
+    /**
+     * get number of nodes on the board
+     */
+    public int nodes() {
+        return adjacent.length;
+    }
+
+    /**
+     * get mask of every node on the board
+     */
+    public int allNodes() {
+        return (int) ((1L << adjacent.length) - 1);
+    }
+
+    /**
+     * get name of a node
+     * @param node node index
+     */
+    public String nodeName(int node) {
+        return names[node];
+    }
+
+    /**
+     * get index of a named node
+     * @param nodeName node name
+     * @return node index, -1 if there is no such node
+     */
+    public int node(String nodeName) {
+        return Arrays.asList(names).indexOf(nodeName);
+    }
+
+    /**
+     * get neighbours of a node
+     * @param node node index
+     * @return mask of adjacent nodes
+     */
+    public int adjacent(int node) {
+        return adjacent[node];
+    }
+
+    /**
+     * get number of mills on the board
+     */
+    public int millCount() {
+        return mills.length;
+    }
+
+    /**
+     * get nodes of a mill
+     * @param mill mill index
+     * @return mask of the mill's nodes
+     */
+    public int mill(int mill) {
+        return mills[mill];
+    }
+
+    /**
+     * get mills through a node
+     * @param node node index
+     * @return mask of mill indices
+     */
+    public int millsThrough(int node) {
+        return nodeMills[node];
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
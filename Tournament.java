@@ -0,0 +1,248 @@
+package se2aa4.morris;
+
+import se2aa4.morris.enums.Detail;
+import se2aa4.morris.enums.Player;
+import se2aa4.morris.enums.State;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongFunction;
+
+/**
+ * Self-play match runner on a work-stealing pool
+ *
+ * Player A plays red and player B blue; the first mover alternates between
+ * games. Every game opens with a few seeded random plies so deterministic
+ * players don't repeat the same game.
+ */
+public final class Tournament {
+
+    // games per task before splitting
+    private static final int BATCH = 16;
+
+    // players by name, each worker thread gets its own instances
+    private final LongFunction<Searcher> playerA, playerB;
+    private final ThreadLocal<Searcher[]> players;
+
+    private final int games;
+    private final int maxPlies;
+    private final int openingPlies;
+    private final long seed;
+
+    // streaming results
+    private final LongAdder played = new LongAdder();
+    private final LongAdder winsA = new LongAdder(), winsB = new LongAdder(), draws = new LongAdder();
+    private final LongAdder firstMoverWins = new LongAdder();
+    private final LongAdder plies = new LongAdder();
+    private final LongAccumulator longest = new LongAccumulator(Math::max, 0);
+    private long elapsed;
+
+    /**
+     * Tournament constructor
+     * @param playerA creates player A from a seed
+     * @param playerB creates player B from a seed
+     * @param games number of games
+     * @param maxPlies plies after which a game is drawn
+     * @param openingPlies random plies at the start of each game
+     * @param seed random seed
+     */
+    public Tournament(LongFunction<Searcher> playerA, LongFunction<Searcher> playerB,
+                      int games, int maxPlies, int openingPlies, long seed) {
+        this.playerA = playerA;
+        this.playerB = playerB;
+        this.games = games;
+        this.maxPlies = maxPlies;
+        this.openingPlies = openingPlies;
+        this.seed = seed;
+        SplittableRandom seeds = new SplittableRandom(seed);
+        players = ThreadLocal.withInitial(() -> {
+            synchronized (seeds) {
+                return new Searcher[] {playerA.apply(seeds.nextLong()), playerB.apply(seeds.nextLong())};
+            }
+        });
+    }
+
+    /**
+     * play all games
+     * @param threads worker threads
+     */
+    public void run(int threads) {
+        long start = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            pool.invoke(new Batch(0, games));
+        } finally {
+            pool.shutdown();
+        }
+        elapsed = System.nanoTime() - start;
+    }
+
+    /**
+     * range of games split between workers
+     */
+    private final class Batch extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int from, to;
+
+        Batch(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= BATCH) {
+                for (int i = from; i < to; i++) play(i);
+            } else {
+                int mid = (from + to) >>> 1;
+                invokeAll(new Batch(from, mid), new Batch(mid, to));
+            }
+        }
+    }
+
+    /**
+     * play one game and add it to the results
+     * @param number game number
+     */
+    private void play(int number) {
+        Searcher[] agents = players.get();
+        SplittableRandom random = new SplittableRandom(seed ^ number * 0x9e3779b97f4a7c15L);
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        Player first = number % 2 == 0 ? Player.RED : Player.BLUE;
+        Game game = new Game();
+        game.newGame(first);
+
+        Player winner = Player.NONE;
+        int ply = 0;
+        for (; ply < maxPlies; ply++) {
+            Player side = game.getTurn();
+            int m;
+            if (Engine.isLost(game.getFrame(), side)) {
+                m = 0;
+            } else if (ply < openingPlies) {
+                int n = game.getLegalMoves(moves);
+                m = n == 0 ? 0 : moves[random.nextInt(n)];
+            } else {
+                m = game.findMove(agents[side == Player.RED ? 0 : 1]);
+            }
+            if (m == 0) {
+                winner = side.opponent();
+                break;
+            }
+            Detail detail = game.playMove(m);
+            if (detail != Detail.END_TURN) {
+                throw new IllegalStateException("game " + number + " ply " + ply + ": "
+                        + Move.toString(m, side) + " gave " + detail);
+            }
+            if (game.getState() == State.WON) {
+                winner = side;
+                ply++;
+                break;
+            }
+            if (game.getState() == State.DRAW) {
+                ply++;
+                break;
+            }
+        }
+
+        played.increment();
+        plies.add(ply);
+        longest.accumulate(ply);
+        if (winner == Player.RED) winsA.increment();
+        else if (winner == Player.BLUE) winsB.increment();
+        else draws.increment();
+        if (winner == first) firstMoverWins.increment();
+    }
+
+    /**
+     * get summary of the results so far
+     */
+    public String getInfo() {
+        long n = Math.max(played.sum(), 1);
+        return String.format("games %d: A %.1f%% B %.1f%% draw %.1f%%, first mover %.1f%%,"
+                        + " length avg %.1f max %d, %.0f games/s",
+                played.sum(), 100.0 * winsA.sum() / n, 100.0 * winsB.sum() / n, 100.0 * draws.sum() / n,
+                100.0 * firstMoverWins.sum() / n, (double) plies.sum() / n, longest.get(),
+                elapsed > 0 ? played.sum() * 1e9 / elapsed : 0.0);
+    }
+
+    /**
+     * get games won by player A
+     */
+    public long getWinsA() {
+        return winsA.sum();
+    }
+
+    /**
+     * get games won by player B
+     */
+    public long getWinsB() {
+        return winsB.sum();
+    }
+
+    /**
+     * get drawn games
+     */
+    public long getDraws() {
+        return draws.sum();
+    }
+
+    /**
+     * get time taken by the last run
+     * @return nanoseconds
+     */
+    public long getElapsed() {
+        return elapsed;
+    }
+
+    /**
+     * create a player from its name
+     * @param name random, greedy, engine:depth or mcts:playouts
+     * @return factory taking a random seed
+     */
+    static LongFunction<Searcher> player(String name) {
+        if (name.equals("random")) return RandomPlayer::new;
+        if (name.equals("greedy")) return GreedyPlayer::new;
+        if (name.startsWith("engine:")) {
+            int depth = Integer.parseInt(name.substring("engine:".length()));
+            return s -> {
+                Engine engine = new Engine(new TranspositionTable(4));
+                engine.setMaxDepth(depth);
+                engine.setTimeLimit(Long.MAX_VALUE / 2000000L);
+                return engine;
+            };
+        }
+        if (name.startsWith("mcts:")) {
+            long playouts = Long.parseLong(name.substring("mcts:".length()));
+            return s -> {
+                MctsEngine engine = new MctsEngine(1, 1 << 18);
+                engine.setPlayoutLimit(playouts);
+                engine.setTimeLimit(Long.MAX_VALUE / 2000000L);
+                return engine;
+            };
+        }
+        throw new IllegalArgumentException("unknown player " + name);
+    }
+
+    /**
+     * play a match and print the results
+     * @param args player A, player B, games, threads, max plies
+     */
+    public static void main(String[] args) {
+        String a = args.length > 0 ? args[0] : "greedy";
+        String b = args.length > 1 ? args[1] : "random";
+        int games = args.length > 2 ? Integer.parseInt(args[2]) : 10000;
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        int maxPlies = args.length > 4 ? Integer.parseInt(args[4]) : 200;
+
+        Tournament t = new Tournament(player(a), player(b), games, maxPlies, 4, 1);
+        t.run(threads);
+        System.out.println(a + " vs " + b + ", " + threads + " threads");
+        System.out.println(t.getInfo());
+    }
+}
@@ -0,0 +1,147 @@
+package se2aa4.morris;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-size lock-free transposition table
+ *
+ * Keys are stored xor-ed with their data so a torn write from another
+ * thread fails the key check instead of returning mixed data.
+ */
+public final class TranspositionTable {
+
+    // bound types
+    public static final int EXACT = 1, LOWER = 2, UPPER = 3;
+
+    // returned by probe when the position is not stored
+    public static final long MISS = 0;
+
+    // data layout
+    private static final int SCORE_SHIFT = 16, DEPTH_SHIFT = 32, FLAG_SHIFT = 40, AGE_SHIFT = 42;
+    private static final int AGE_MASK = 0x3f;
+
+    private final long[] keys, data;
+    private final int mask;
+    private int age;
+
+    /**
+     * create a table
+     * @param sizeMb table size in megabytes, rounded down to a power of two
+     */
+    public TranspositionTable(int sizeMb) {
+        long entries = Long.highestOneBit(Math.max(1L, (long) sizeMb << 20) / 16);
+        int size = (int) Math.max(2, Math.min(entries, 1 << 30));
+        keys = new long[size];
+        data = new long[size];
+        mask = size - 2;
+    }
+
+    /**
+     * look up a position
+     * @param key position hash
+     * @return packed entry data, MISS if not found
+     */
+    public long probe(long key) {
+        int i = (int) key & mask;
+        long d = data[i];
+        if ((keys[i] ^ d) == key && d != MISS) return d;
+        d = data[i + 1];
+        if ((keys[i + 1] ^ d) == key && d != MISS) return d;
+        return MISS;
+    }
+
+    /**
+     * store a search result
+     * @param key position hash
+     * @param move best move found, 0 if none
+     * @param score position score
+     * @param depth remaining search depth
+     * @param flag bound type
+     */
+    public void store(long key, int move, int score, int depth, int flag) {
+        int i = (int) key & mask;
+        long d = (move & 0xffffL)
+                | ((score & 0xffffL) << SCORE_SHIFT)
+                | ((long) Math.min(depth, 0xff) << DEPTH_SHIFT)
+                | ((long) flag << FLAG_SHIFT)
+                | ((long) age << AGE_SHIFT);
+
+        // replace the same position, else the less valuable slot
+        int slot;
+        if ((keys[i] ^ data[i]) == key) slot = i;
+        else if ((keys[i + 1] ^ data[i + 1]) == key) slot = i + 1;
+        else slot = (worth(data[i]) <= worth(data[i + 1])) ? i : i + 1;
+
+        // keep a deeper result for the same position from this search
+        if ((keys[slot] ^ data[slot]) == key && age(data[slot]) == age
+                && depth(data[slot]) > depth && flag != EXACT) return;
+
+        data[slot] = d;
+        keys[slot] = key ^ d;
+    }
+
+    /**
+     * value of keeping an entry, older searches lose value
+     * @param d packed entry data
+     */
+    private int worth(long d) {
+        if (d == MISS) return Integer.MIN_VALUE;
+        int stale = (age - age(d)) & AGE_MASK;
+        return depth(d) - 4 * stale;
+    }
+
+    /**
+     * start a new search, ageing existing entries
+     */
+    public void newSearch() {
+        age = (age + 1) & AGE_MASK;
+    }
+
+    /**
+     * clear all entries
+     */
+    public void clear() {
+        Arrays.fill(keys, 0);
+        Arrays.fill(data, 0);
+    }
+
+    /**
+     * get stored move
+     * @param d packed entry data
+     */
+    public static int move(long d) {
+        return (int) (d & 0xffff);
+    }
+
+    /**
+     * get stored score
+     * @param d packed entry data
+     */
+    public static int score(long d) {
+        return (short) (d >>> SCORE_SHIFT);
+    }
+
+    /**
+     * get stored depth
+     * @param d packed entry data
+     */
+    public static int depth(long d) {
+        return (int) (d >>> DEPTH_SHIFT) & 0xff;
+    }
+
+    /**
+     * get stored bound type
+     * @param d packed entry data
+     */
+    public static int flag(long d) {
+        return (int) (d >>> FLAG_SHIFT) & 0x3;
+    }
+
+    /**
+     * get search age of an entry
+     * @param d packed entry data
+     */
+    private static int age(long d) {
+        return (int) (d >>> AGE_SHIFT) & AGE_MASK;
+    }
+}
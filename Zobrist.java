@@ -0,0 +1,71 @@
+package se2aa4.morris;
+
+import se2aa4.morris.enums.Player;
+
+import java.util.SplittableRandom;
+
+/**
+ * Zobrist keys for position hashing
+ */
+public final class Zobrist {
+
+    // upper bounds covered by the key tables
+    private static final int MAX_NODES = 32;
+    private static final int MAX_INVENTORY = 16;
+
+    // fixed seed so hashes are stable between runs
+    private static final long SEED = 0x6d6f727269733655L;
+
+    private static final long[][] NODE = new long[Player.values().length][MAX_NODES];
+    private static final long[][] INVENTORY = new long[Player.values().length][MAX_INVENTORY];
+    private static final long SIDE;
+
+    static {
+        SplittableRandom random = new SplittableRandom(SEED);
+        for (Player p: new Player[] {Player.RED, Player.BLUE}) {
+            for (int i = 0; i < MAX_NODES; i++) NODE[p.ordinal()][i] = random.nextLong();
+            for (int i = 0; i < MAX_INVENTORY; i++) INVENTORY[p.ordinal()][i] = random.nextLong();
+        }
+        SIDE = random.nextLong();
+    }
+
+    private Zobrist() {
+    }
+
+    /**
+     * get key of a player's piece on a node
+     * @param p which player
+     * @param node node index
+     */
+    public static long node(Player p, int node) {
+        return NODE[p.ordinal()][node];
+    }
+
+    /**
+     * get key of a player's inventory count
+     * @param p which player
+     * @param count pieces left in inventory
+     */
+    public static long inventory(Player p, int count) {
+        return INVENTORY[p.ordinal()][count];
+    }
+
+    /**
+     * get key of a board, so positions on different boards hash apart
+     * @param topology board
+     * @return key, zero for the six men's board
+     */
+    public static long board(Topology topology) {
+        if (topology == Topology.SIX) return 0;
+        return new SplittableRandom(SEED ^ topology.name().hashCode()).nextLong();
+    }
+
+    /**
+     * get key of the side to move
+     * @param p player to move
+     * @return key, zero for red
+     */
+    public static long side(Player p) {
+        return (p == Player.BLUE) ? SIDE : 0;
+    }
+}
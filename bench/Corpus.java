@@ -0,0 +1,103 @@
+package se2aa4.morris;
+
+import se2aa4.morris.enums.Location;
+import se2aa4.morris.enums.Player;
+import se2aa4.morris.enums.State;
+
+import java.util.SplittableRandom;
+
+/**
+ * Positions of one game phase for the rules benchmarks
+ *
+ * Taken from seeded random play, so every run sees the same positions.
+ * Kept apart from RulesBenchmark so it builds and runs without JMH.
+ */
+final class Corpus {
+
+    // positions, the player to move and a legal move in each
+    final Game[] games;
+    final Frame[] frames;
+    final Player[] sides;
+    final int[] moves;
+    final Location[] from, to;
+
+    private Corpus(int size) {
+        games = new Game[size];
+        frames = new Frame[size];
+        sides = new Player[size];
+        moves = new int[size];
+        from = new Location[size];
+        to = new Location[size];
+    }
+
+    /**
+     * collect positions of a phase
+     * @param phase early, middle or end, see inPhase
+     * @param size number of positions
+     * @param seed random seed
+     */
+    static Corpus build(String phase, int size, long seed) {
+        Corpus corpus = new Corpus(size);
+        int[] list = new int[MoveGenerator.MAX_MOVES];
+        SplittableRandom random = new SplittableRandom(seed);
+        Game game = newGame();
+        for (int found = 0; found < size; ) {
+            Frame frame = game.getFrame();
+            Player side = game.getTurn();
+            int n = game.getLegalMoves(list);
+            // won and drawn games take no more moves
+            if (n == 0 || game.getState() != State.IN_PROGRESS || game.getTurnCount() > 200) {
+                game = newGame();
+                continue;
+            }
+            int m = list[random.nextInt(n)];
+            if (inPhase(phase, frame) && random.nextInt(4) == 0) {
+                corpus.games[found] = Game.replay(game.getFirstTurn(), turns(game), game.getTurnCount(),
+                        game.getState());
+                corpus.frames[found] = new Frame(frame);
+                corpus.sides[found] = side;
+                corpus.moves[found] = m;
+                corpus.from[found] = Move.isPlacement(m)
+                        ? Location.inventory(side, frame.getInventory(side) - 1)
+                        : Location.byNode(Move.from(m));
+                corpus.to[found] = Location.byNode(Move.to(m));
+                found++;
+            }
+            game.playMove(m);
+        }
+        return corpus;
+    }
+
+    /**
+     * is a position in a phase
+     *
+     * early: both players still placing; middle: both sliding with at least
+     * five pieces; end: a player is down to three or four pieces
+     */
+    static boolean inPhase(String phase, Frame frame) {
+        int red = Integer.bitCount(frame.getPieces(Player.RED)) + frame.getInventory(Player.RED);
+        int blue = Integer.bitCount(frame.getPieces(Player.BLUE)) + frame.getInventory(Player.BLUE);
+        boolean placing = frame.getInventory(Player.RED) > 0 && frame.getInventory(Player.BLUE) > 0;
+        switch (phase) {
+            case "early":
+                return placing;
+            case "middle":
+                return frame.getInventory(Player.RED) + frame.getInventory(Player.BLUE) == 0
+                        && Math.min(red, blue) >= 5;
+            default:
+                return !placing && Math.min(red, blue) >= 3 && Math.min(red, blue) <= 4;
+        }
+    }
+
+    private static Game newGame() {
+        Game game = new Game();
+        game.newGame(Player.RED);
+        return game;
+    }
+
+    private static int[] turns(Game game) {
+        int[] turns = new int[game.getTurnCount()];
+        for (int t = 0; t < turns.length; t++) turns[t] = game.getTurnMove(t);
+        return turns;
+    }
+}
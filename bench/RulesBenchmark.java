@@ -0,0 +1,176 @@
+package se2aa4.morris;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import se2aa4.morris.enums.Detail;
+import se2aa4.morris.enums.Location;
+import se2aa4.morris.enums.Player;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks of the rules layer
+ *
+ * Each benchmark cycles through a fixed corpus of positions from one game
+ * phase, taken from seeded random play. Run main, or the JMH runner with
+ * -prof gc, to get gc.alloc.rate.norm next to the timings.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RulesBenchmark {
+
+    // corpus size, a power of two
+    private static final int CORPUS = 64;
+    private static final long SEED = 13;
+
+    // see Corpus.inPhase
+    @Param({"early", "middle", "end"})
+    public String phase;
+
+    // corpus positions, the player to move and a legal move in each
+    private Game[] games;
+    private Frame[] frames;
+    private Player[] sides;
+    private int[] moves;
+    private Location[] from, to;
+
+    private final int[] list = new int[MoveGenerator.MAX_MOVES];
+    private int i;
+    private Path file;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        Corpus corpus = Corpus.build(phase, CORPUS, SEED);
+        games = corpus.games;
+        frames = corpus.frames;
+        sides = corpus.sides;
+        moves = corpus.moves;
+        from = corpus.from;
+        to = corpus.to;
+        file = Files.createTempFile("morris", ".sav");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    private int next() {
+        return i = (i + 1) & (CORPUS - 1);
+    }
+
+    @Benchmark
+    public int frameMove() {
+        int k = next();
+        Frame frame = frames[k];
+        int m = frame.move(from[k], to[k]);
+        frame.unmake(sides[k], m);
+        return m;
+    }
+
+    @Benchmark
+    public void makeUnmake() {
+        int k = next();
+        frames[k].make(sides[k], moves[k]);
+        frames[k].unmake(sides[k], moves[k]);
+    }
+
+    @Benchmark
+    public Player whoseMill() {
+        int k = next();
+        Frame frame = frames[k];
+        frame.make(sides[k], moves[k]);
+        Player p = frame.whoseMill();
+        frame.unmake(sides[k], moves[k]);
+        return p;
+    }
+
+    @Benchmark
+    public boolean isMoveFly() {
+        int k = next();
+        return Frame.isMoveFly(from[k], to[k]);
+    }
+
+    @Benchmark
+    public boolean movePossible() {
+        int k = next();
+        return frames[k].movePossible(sides[k]);
+    }
+
+    @Benchmark
+    public Object getFrame() {
+        return frames[next()].getFrame();
+    }
+
+    @Benchmark
+    public int generate() {
+        int k = next();
+        return MoveGenerator.generate(frames[k], sides[k], list);
+    }
+
+    @Benchmark
+    public Detail handleMoveEndTurn() {
+        int k = next();
+        Game game = games[k];
+        Detail detail = game.playMove(moves[k]);
+        game.undo();
+        return detail;
+    }
+
+    @Benchmark
+    public void restore() {
+        int k = next();
+        Game game = games[k];
+        game.handleMove(from[k]);
+        game.handleMove(to[k]);
+        game.restore();
+    }
+
+    @Benchmark
+    public boolean undoRedo() {
+        Game game = games[next()];
+        return game.undo() && game.redo();
+    }
+
+    @Benchmark
+    public int saveLoad() throws IOException {
+        SaveFormat.write(file, Arrays.asList(games));
+        return SaveFormat.read(file).size();
+    }
+
+    /**
+     * run the suite with allocation profiling
+     * @param args JMH include pattern, defaults to this class
+     */
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(args.length > 0 ? args[0] : RulesBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
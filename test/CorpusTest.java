@@ -0,0 +1,40 @@
+package se2aa4.morris;
+
+import se2aa4.morris.enums.Player;
+import se2aa4.morris.enums.State;
+
+/**
+ * Checks that the rules benchmark corpus of every phase can be built
+ *
+ * Each phase must finish within a time limit, so a corpus stuck on a game
+ * that takes no more moves fails instead of hanging.
+ */
+public final class CorpusTest {
+
+    private static final long TIMEOUT_MS = 60000;
+
+    public static void main(String[] args) throws InterruptedException {
+        for (String phase: new String[] {"early", "middle", "end"}) {
+            Corpus[] built = new Corpus[1];
+            Thread thread = new Thread(() -> built[0] = Corpus.build(phase, 64, 13));
+            thread.setDaemon(true);
+            thread.start();
+            thread.join(TIMEOUT_MS);
+            if (built[0] == null) throw new AssertionError(phase + " corpus not built in " + TIMEOUT_MS + " ms");
+
+            Corpus corpus = built[0];
+            for (int k = 0; k < corpus.frames.length; k++) {
+                Frame frame = corpus.frames[k];
+                Player side = corpus.sides[k];
+                check(Corpus.inPhase(phase, frame), phase + " position " + k + " is out of phase");
+                check(corpus.games[k].getState() == State.IN_PROGRESS, phase + " game " + k + " is over");
+                check(MoveGenerator.isLegal(frame, side, corpus.moves[k]), phase + " move " + k + " is illegal");
+            }
+            System.out.println(phase + ": ok");
+        }
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) throw new AssertionError(message);
+    }
+}
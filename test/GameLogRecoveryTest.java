@@ -0,0 +1,74 @@
+package se2aa4.morris;
+
+import se2aa4.morris.enums.Player;
+import se2aa4.morris.enums.State;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Checks that games recovered from a log play on like the games that were logged
+ *
+ * The log snapshots often, so every game is rebuilt from a snapshot taken
+ * well into its moving phase, and must reach the same draws afterwards.
+ */
+public final class GameLogRecoveryTest {
+
+    public static void main(String[] args) throws Exception {
+        Path dir = Files.createTempDirectory("morris-log");
+        int[] list = new int[MoveGenerator.MAX_MOVES];
+        Map<Long, Game> games = new HashMap<>();
+        try {
+            GameLog log = new GameLog(dir, 300);
+            for (long key = 1; key <= 40; key++) {
+                Game game = new Game();
+                game.newGame(Player.RED);
+                games.put(key, game);
+                log.created(key, Player.RED);
+            }
+            Random random = new Random(7);
+            for (int turn = 0; turn < 60; turn++) {
+                for (Map.Entry<Long, Game> e: games.entrySet()) {
+                    Game game = e.getValue();
+                    int n = game.getState() == State.IN_PROGRESS ? game.getLegalMoves(list) : 0;
+                    if (n == 0) continue;
+                    game.playMove(list[random.nextInt(n)]);
+                    log.moved(e.getKey(), game.getTurnMove(game.getTurnCount() - 1), game.getState());
+                }
+            }
+            log.close();
+
+            log = new GameLog(dir, 300);
+            for (Map.Entry<Long, Game> e: games.entrySet()) {
+                Game game = e.getValue(), recovered = log.getRecovered().get(e.getKey());
+                check(recovered != null && recovered.getHash() == game.getHash()
+                        && recovered.getState() == game.getState(), "game " + e.getKey() + " not recovered");
+                Random moves = new Random(e.getKey());
+                for (int turn = 0; turn < 300; turn++) {
+                    int n = game.getState() == State.IN_PROGRESS ? game.getLegalMoves(list) : 0;
+                    if (n == 0) break;
+                    int move = list[moves.nextInt(n)];
+                    game.playMove(move);
+                    recovered.playMove(move);
+                    check(recovered.getState() == game.getState() && recovered.getDrawReason() == game.getDrawReason(),
+                            "game " + e.getKey() + " ends differently after recovery");
+                }
+            }
+            log.close();
+        } finally {
+            try (Stream<Path> files = Files.list(dir)) {
+                for (Path f: (Iterable<Path>) files::iterator) Files.delete(f);
+            }
+            Files.delete(dir);
+        }
+        System.out.println("game log recovery: ok");
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) throw new AssertionError(message);
+    }
+}
@@ -0,0 +1,54 @@
+package se2aa4.morris;
+
+import se2aa4.morris.enums.Detail;
+import se2aa4.morris.enums.Location;
+import se2aa4.morris.enums.Player;
+import se2aa4.morris.enums.State;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Checks that a save of the original release loads and saves again
+ *
+ * legacy.ser was written by the original Game after red placed on nONW
+ * and nOE and blue on nIN and nOS, with red's third placement, on nISW,
+ * still in progress.
+ */
+public final class LegacySaveTest {
+
+    public static void main(String[] args) throws Exception {
+        Path legacy = Paths.get(args.length > 0 ? args[0] : "test/legacy.ser");
+        Game game = SaveFormat.load(legacy);
+        Frame frame = game.getFrame();
+        check(game.getState() == State.IN_PROGRESS, "state " + game.getState());
+        check(game.getTurn() == Player.RED, "turn " + game.getTurn());
+        check(frame.getPieces(Player.RED) == (bit(Location.nONW) | bit(Location.nOE)), "red pieces");
+        check(frame.getPieces(Player.BLUE) == (bit(Location.nIN) | bit(Location.nOS)), "blue pieces");
+        check(frame.getInventory(Player.RED) == 4 && frame.getInventory(Player.BLUE) == 4, "inventories");
+
+        // the loaded game plays on and keeps its start position through a save
+        int place = Move.of(Move.INVENTORY, Location.nISW.node(), Move.NONE);
+        check(game.playMove(place) == Detail.END_TURN, "red can't place on nISW");
+        Path copy = Files.createTempFile("morris", ".sav");
+        try {
+            SaveFormat.save(copy, game);
+            Game reloaded = SaveFormat.load(copy);
+            check(reloaded.getHash() == game.getHash() && reloaded.getTurnCount() == 1, "resaved game differs");
+            check(reloaded.undo() && reloaded.getHash() == Game.replay(game.getStart(), Player.RED,
+                    new int[0], 0, State.IN_PROGRESS).getHash(), "undo doesn't reach the loaded position");
+        } finally {
+            Files.deleteIfExists(copy);
+        }
+        System.out.println("legacy save: ok");
+    }
+
+    private static int bit(Location l) {
+        return Topology.bit(l.node());
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) throw new AssertionError(message);
+    }
+}
@@ -0,0 +1,52 @@
+package se2aa4.morris;
+
+import se2aa4.morris.enums.Detail;
+import se2aa4.morris.enums.Location;
+import se2aa4.morris.enums.Player;
+import se2aa4.morris.enums.State;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Checks that a game saved with a turn in progress loads at the start of that
+ * turn, under the same draw rule
+ */
+public final class MidTurnSaveTest {
+
+    public static void main(String[] args) throws Exception {
+        Game game = new Game();
+        game.newGame(Player.RED);
+        game.setNoCaptureLimit(40);
+        check(game.playMove(Move.of(Move.INVENTORY, Location.nONW.node(), Move.NONE)) == Detail.END_TURN,
+                "red can't place on nONW");
+        long turnStart = game.getHash();
+
+        // blue places a piece without ending the turn
+        game.handleMove(Location.iB5);
+        game.handleMove(Location.nOE);
+        check(game.getHash() != turnStart, "the unfinished turn didn't move a piece");
+
+        Path file = Files.createTempFile("morris", ".sav");
+        try {
+            SaveFormat.save(file, game);
+            Game loaded = SaveFormat.load(file);
+            check(loaded.getState() == State.IN_PROGRESS, "state " + loaded.getState());
+            check(loaded.getTurn() == Player.BLUE, "turn " + loaded.getTurn());
+            check(loaded.getTurnCount() == 1, "turns " + loaded.getTurnCount());
+            check(loaded.getHash() == turnStart, "loaded game isn't at the start of the turn");
+            check(loaded.getNoCaptureLimit() == 40, "no-capture limit " + loaded.getNoCaptureLimit());
+
+            // the saved game is unchanged and still finishes its turn
+            check(game.endTurn() == Detail.END_TURN, "blue's turn doesn't end");
+            check(game.getFrame().getPieces(Player.BLUE) == Topology.bit(Location.nOE.node()), "blue pieces");
+        } finally {
+            Files.deleteIfExists(file);
+        }
+        System.out.println("mid-turn save: ok");
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) throw new AssertionError(message);
+    }
+}
@@ -0,0 +1,37 @@
+package se2aa4.morris;
+
+/**
+ * Checks that sessions are only reached through their own token
+ */
+public final class SessionRegistryTest {
+
+    public static void main(String[] args) {
+        SessionRegistry registry = new SessionRegistry(2, id -> id * 0x9e3779b9 + 1);
+        SessionRegistry.Owner a = new SessionRegistry.Owner(), b = new SessionRegistry.Owner();
+        Game first = new Game(), second = new Game(), third = new Game();
+        long ta = registry.add(first, a), tb = registry.add(second, b), tc = registry.add(third, null);
+
+        check(registry.get(ta) == first && registry.get(tb) == second && registry.get(tc) == third, "own tokens");
+        for (long token: new long[] {ta, tb, tc}) {
+            int id = SessionRegistry.id(token);
+            check(registry.get(id & 0xffffffffL) == null, "bare id " + id + " reaches its session");
+            check(registry.get(token ^ 1L << 32) == null, "wrong tag reaches session " + id);
+        }
+        check(registry.get(ta & 0xffffffff00000000L | SessionRegistry.id(tb) & 0xffffffffL) == null,
+                "one session's tag reaches another");
+        check(!registry.remove(SessionRegistry.id(tb) & 0xffffffffL) && registry.get(tb) == second,
+                "bare id removes a session");
+
+        // dropping an owner frees only its sessions, and a reused slot gets a new token
+        check(registry.removeAll(a) == 1 && registry.get(ta) == null && registry.get(tb) == second
+                && registry.get(tc) == third, "removeAll");
+        long td = registry.add(new Game(), b);
+        check(td != ta && registry.get(ta) == null, "stale token reaches a reused slot");
+        check(registry.removeAll(b) == 2 && registry.size() == 1, "removeAll of two sessions");
+        System.out.println("session registry: ok");
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) throw new AssertionError(message);
+    }
+}